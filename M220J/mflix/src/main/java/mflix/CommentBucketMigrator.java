@@ -0,0 +1,122 @@
+package mflix;
+
+import static org.bson.codecs.configuration.CodecRegistries.fromProviders;
+import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.bson.Document;
+import org.bson.codecs.pojo.PojoCodecProvider;
+import org.bson.types.ObjectId;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Sorts;
+
+import mflix.api.daos.BucketedCommentDao;
+import mflix.api.daos.CommentDao;
+import mflix.api.models.Comment;
+
+/**
+ * Copies the flat `comments` collection into the bucket layout of `comment_buckets`, read by
+ * BucketedCommentDao once `api.comments.storage=bucketed`. The `comment_buckets` collection is
+ * dropped first, and `comments` is left untouched, so the migration can be run again and the
+ * application switched back to the flat layout.
+ *
+ * <p>Comments of each movie are cut into buckets of `bucket_size` from the oldest one, so that only
+ * the most recent bucket of a movie has room left. Buckets are numbered oldest first, so that their
+ * `n` order is their date order.
+ */
+public class CommentBucketMigrator {
+
+  private static final int INSERT_BATCH = 500;
+
+  /**
+   * Migration script main class.
+   *
+   * @param args - MongoDB connection string, and optionally the bucket size (50 by default).
+   */
+  public static void main(String[] args) {
+    if (args.length < 1) {
+      System.out.println("Usage: CommentBucketMigrator <mongodb uri> [bucket size]");
+      System.exit(1);
+    }
+    String mongoUri = args[0];
+    int bucketSize = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+    System.out.println("Comment buckets migration");
+    MongoClient mongoClient = MongoClients.create(mongoUri);
+    MongoDatabase mflix = mongoClient.getDatabase("mflix");
+    MongoCollection<Comment> comments =
+        mflix
+            .getCollection(CommentDao.COMMENT_COLLECTION, Comment.class)
+            .withCodecRegistry(
+                fromRegistries(
+                    MongoClientSettings.getDefaultCodecRegistry(),
+                    fromProviders(PojoCodecProvider.builder().automatic(true).build())));
+    MongoCollection<Document> buckets = mflix.getCollection(BucketedCommentDao.BUCKETS_COLLECTION);
+    buckets.drop();
+
+    List<Document> pending = new ArrayList<>(INSERT_BATCH);
+    List<Comment> movieComments = new ArrayList<>();
+    ObjectId movieId = null;
+    long migrated = 0;
+    long bucketCount = 0;
+    // the reverse of the movie_id/date index created by CommentDao, so that no sort runs in memory
+    for (Comment comment :
+        comments
+            .find()
+            .sort(Sorts.orderBy(Sorts.descending("movie_id"), Sorts.ascending("date")))) {
+      if (movieId != null && !movieId.equals(comment.getMovieObjectId())) {
+        bucketCount += addBuckets(movieId, movieComments, bucketSize, pending);
+        movieComments.clear();
+      }
+      movieId = comment.getMovieObjectId();
+      movieComments.add(comment);
+      migrated++;
+      if (pending.size() >= INSERT_BATCH) {
+        buckets.insertMany(pending, new InsertManyOptions().ordered(false));
+        pending.clear();
+      }
+    }
+    if (movieId != null) {
+      bucketCount += addBuckets(movieId, movieComments, bucketSize, pending);
+    }
+    if (!pending.isEmpty()) {
+      buckets.insertMany(pending, new InsertManyOptions().ordered(false));
+    }
+
+    System.out.println(
+        MessageFormat.format("Migrated {0} comments into {1} buckets", migrated, bucketCount));
+    mongoClient.close();
+  }
+
+  /**
+   * Cuts the comments of a movie into buckets.
+   *
+   * @param movieId - id of the movie.
+   * @param oldestFirst - comments of the movie, oldest first.
+   * @param bucketSize - max number of comments per bucket.
+   * @param pending - list the buckets are added to, oldest first.
+   * @return number of added buckets.
+   */
+  private static int addBuckets(
+      ObjectId movieId, List<Comment> oldestFirst, int bucketSize, List<Document> pending) {
+    int added = 0;
+    for (int from = 0; from < oldestFirst.size(); from += bucketSize) {
+      int to = Math.min(from + bucketSize, oldestFirst.size());
+      List<Comment> bucket = new ArrayList<>(oldestFirst.subList(from, to));
+      Collections.reverse(bucket);
+      pending.add(BucketedCommentDao.bucket(movieId, added, bucket));
+      added++;
+    }
+    return added;
+  }
+}
@@ -0,0 +1,105 @@
+package mflix.api.cache;
+
+import com.fasterxml.jackson.core.SerializableString;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Already serialized JSON value, kept as UTF-8 bytes, that can be spliced into a document with
+ * {@link com.fasterxml.jackson.core.JsonGenerator#writeRawValue(SerializableString)}. The bytes
+ * are never quoted nor escaped.
+ */
+public final class JsonFragment implements SerializableString {
+
+  private final byte[] json;
+
+  public JsonFragment(byte[] json) {
+    this.json = json;
+  }
+
+  public int size() {
+    return json.length;
+  }
+
+  @Override
+  public String getValue() {
+    return new String(json, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public int charLength() {
+    return getValue().length();
+  }
+
+  @Override
+  public char[] asQuotedChars() {
+    return getValue().toCharArray();
+  }
+
+  @Override
+  public byte[] asUnquotedUTF8() {
+    return json;
+  }
+
+  @Override
+  public byte[] asQuotedUTF8() {
+    return json;
+  }
+
+  @Override
+  public int appendQuotedUTF8(byte[] buffer, int offset) {
+    return appendUnquotedUTF8(buffer, offset);
+  }
+
+  @Override
+  public int appendQuoted(char[] buffer, int offset) {
+    return appendUnquoted(buffer, offset);
+  }
+
+  @Override
+  public int appendUnquotedUTF8(byte[] buffer, int offset) {
+    if (offset + json.length > buffer.length) {
+      return -1;
+    }
+    System.arraycopy(json, 0, buffer, offset, json.length);
+    return json.length;
+  }
+
+  @Override
+  public int appendUnquoted(char[] buffer, int offset) {
+    String value = getValue();
+    if (offset + value.length() > buffer.length) {
+      return -1;
+    }
+    value.getChars(0, value.length(), buffer, offset);
+    return value.length();
+  }
+
+  @Override
+  public int writeQuotedUTF8(OutputStream out) throws IOException {
+    return writeUnquotedUTF8(out);
+  }
+
+  @Override
+  public int writeUnquotedUTF8(OutputStream out) throws IOException {
+    out.write(json);
+    return json.length;
+  }
+
+  @Override
+  public int putQuotedUTF8(ByteBuffer buffer) {
+    return putUnquotedUTF8(buffer);
+  }
+
+  @Override
+  public int putUnquotedUTF8(ByteBuffer buffer) {
+    if (json.length > buffer.remaining()) {
+      return -1;
+    }
+    buffer.put(json);
+    return json.length;
+  }
+}
@@ -0,0 +1,162 @@
+package mflix.api.cache;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import mflix.api.daos.MovieChangeListener;
+import mflix.api.daos.MovieChangeWatcher;
+import mflix.api.models.Movie;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of the JSON serialization of list movies, bounded by the total size
+ * of the cached fragments. Entries are keyed by movie id and `lastupdated` value, and removed as
+ * soon as the {@link MovieChangeWatcher} reports a change on the movie.
+ *
+ * <p>A fragment is only stored if no change was reported on its movie since the catalog version
+ * observed before the movie was read, so that a fragment of a stale read is never cached.
+ */
+@Component
+public class MovieJsonCache implements MovieChangeListener {
+
+  private static final class Entry {
+
+    private final long lastUpdated;
+
+    private final JsonFragment fragment;
+
+    private Entry(long lastUpdated, JsonFragment fragment) {
+      this.lastUpdated = lastUpdated;
+      this.fragment = fragment;
+    }
+  }
+
+  private final MovieChangeWatcher watcher;
+
+  private final boolean enabled;
+
+  private final long maxBytes;
+
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+  /** Catalog version of the latest change event, by movie id. */
+  private final Map<String, Long> changedAt = new HashMap<>();
+
+  /** Catalog version of the latest change stream reset; nothing is tracked before the first one. */
+  private long resetAt = Long.MAX_VALUE;
+
+  private long bytes;
+
+  @Autowired
+  public MovieJsonCache(
+      MovieChangeWatcher watcher,
+      @Value("${api.movies.json_cache.enabled}") boolean enabled,
+      @Value("${api.movies.json_cache.max_bytes}") long maxBytes) {
+    this.watcher = watcher;
+    this.enabled = enabled;
+    this.maxBytes = maxBytes;
+  }
+
+  @PostConstruct
+  public void start() {
+    if (enabled) {
+      watcher.addListener(this);
+    }
+  }
+
+  /**
+   * Tells if a movie can be cached. Movies that embed their comments are left out, since the same
+   * movie is listed without them.
+   *
+   * @param movie - movie to be serialized.
+   * @return true if the movie JSON may be cached.
+   */
+  public boolean accepts(Movie movie) {
+    return enabled && movie.getId() != null && movie.getComments() == null;
+  }
+
+  /**
+   * Cached JSON of a movie.
+   *
+   * @param movie - movie to be serialized.
+   * @return fragment or null if there is no current fragment for the movie.
+   */
+  public synchronized JsonFragment get(Movie movie) {
+    Entry entry = entries.get(movie.getId());
+    if (entry == null || entry.lastUpdated != lastUpdated(movie)) {
+      return null;
+    }
+    return entry.fragment;
+  }
+
+  /**
+   * Stores the JSON of a movie, unless the movie may have changed since it was read.
+   *
+   * @param movie - serialized movie.
+   * @param json - UTF-8 JSON of the movie.
+   * @param catalogVersion - catalog version observed before the movie was read.
+   * @return fragment of the JSON, stored or not.
+   */
+  public synchronized JsonFragment put(Movie movie, byte[] json, long catalogVersion) {
+    JsonFragment fragment = new JsonFragment(json);
+    if (!watcher.isWatching()
+        || json.length > maxBytes
+        || catalogVersion <= resetAt
+        || catalogVersion <= changedAt.getOrDefault(movie.getId(), 0L)) {
+      return fragment;
+    }
+    Entry previous = entries.put(movie.getId(), new Entry(lastUpdated(movie), fragment));
+    if (previous != null) {
+      bytes -= previous.fragment.size();
+    }
+    bytes += json.length;
+    Iterator<Entry> eldest = entries.values().iterator();
+    while (bytes > maxBytes && eldest.hasNext()) {
+      bytes -= eldest.next().fragment.size();
+      eldest.remove();
+    }
+    return fragment;
+  }
+
+  /**
+   * Total size of the cached fragments.
+   *
+   * @return number of bytes.
+   */
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  private static long lastUpdated(Movie movie) {
+    return movie.getLastUpdated() != null ? movie.getLastUpdated().getTime() : 0;
+  }
+
+  @Override
+  public synchronized void onChange(ChangeStreamDocument<Document> change) {
+    if (change.getDocumentKey() == null) {
+      onReset();
+      return;
+    }
+    String movieId = change.getDocumentKey().getObjectId("_id").getValue().toHexString();
+    changedAt.put(movieId, watcher.getVersion());
+    Entry removed = entries.remove(movieId);
+    if (removed != null) {
+      bytes -= removed.fragment.size();
+    }
+  }
+
+  @Override
+  public synchronized void onReset() {
+    resetAt = watcher.getVersion();
+    changedAt.clear();
+    entries.clear();
+    bytes = 0;
+  }
+}
@@ -0,0 +1,157 @@
+package mflix.api.cache;
+
+import mflix.api.models.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Short lived cache of the users read by email. A user is first looked up in the attributes of
+ * the current request, so that the several lookups of one request read it once, then in a least
+ * recently used cache of at most `max_entries` users, each served for `ttl_seconds`.
+ *
+ * <p>User writes invalidate the user explicitly, and a user read from the database is only
+ * cached if no user was invalidated in the meantime, so that a stale read is never cached. The
+ * TTL bounds how long a write done by another application instance goes unnoticed.
+ */
+@Component
+public class UserCache {
+
+  private static final String REQUEST_ATTRIBUTE = UserCache.class.getName() + ".";
+
+  private static final class Entry {
+
+    private final User user;
+
+    private final long cachedAt;
+
+    private Entry(User user, long cachedAt) {
+      this.user = user;
+      this.cachedAt = cachedAt;
+    }
+  }
+
+  private final boolean enabled;
+
+  private final int maxEntries;
+
+  private final long ttlMs;
+
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+  /** Number of invalidations, to tell if a user read from the database is still current. */
+  private long invalidations;
+
+  private final AtomicLong requestHits = new AtomicLong();
+
+  private final AtomicLong cacheHits = new AtomicLong();
+
+  private final AtomicLong reads = new AtomicLong();
+
+  @Autowired
+  public UserCache(
+      @Value("${api.users.cache.enabled}") boolean enabled,
+      @Value("${api.users.cache.max_entries}") int maxEntries,
+      @Value("${api.users.cache.ttl_seconds}") long ttlSeconds) {
+    this.enabled = enabled;
+    this.maxEntries = maxEntries;
+    this.ttlMs = TimeUnit.SECONDS.toMillis(ttlSeconds);
+  }
+
+  /**
+   * Returns a user from the current request or from the cache, or reads it with `loader`.
+   *
+   * @param email - user email.
+   * @param loader - reads a user from the database, returning null if there is none.
+   * @return User object or null.
+   */
+  public User get(String email, Function<String, User> loader) {
+    if (!enabled) {
+      reads.incrementAndGet();
+      return loader.apply(email);
+    }
+    RequestAttributes request = RequestContextHolder.getRequestAttributes();
+    if (request != null) {
+      User user =
+          (User) request.getAttribute(REQUEST_ATTRIBUTE + email, RequestAttributes.SCOPE_REQUEST);
+      if (user != null) {
+        requestHits.incrementAndGet();
+        return user;
+      }
+    }
+
+    User user = null;
+    long observedInvalidations;
+    synchronized (this) {
+      Entry entry = entries.get(email);
+      if (entry != null && System.currentTimeMillis() - entry.cachedAt < ttlMs) {
+        user = entry.user;
+      }
+      observedInvalidations = invalidations;
+    }
+    if (user != null) {
+      cacheHits.incrementAndGet();
+    } else {
+      reads.incrementAndGet();
+      user = loader.apply(email);
+      if (user != null) {
+        cache(email, user, observedInvalidations);
+      }
+    }
+    if (request != null && user != null) {
+      request.setAttribute(REQUEST_ATTRIBUTE + email, user, RequestAttributes.SCOPE_REQUEST);
+    }
+    return user;
+  }
+
+  /**
+   * Removes a user from the cache and from the current request, once it has been written.
+   *
+   * @param email - user email.
+   */
+  public void invalidate(String email) {
+    synchronized (this) {
+      invalidations++;
+      entries.remove(email);
+    }
+    RequestAttributes request = RequestContextHolder.getRequestAttributes();
+    if (request != null) {
+      request.removeAttribute(REQUEST_ATTRIBUTE + email, RequestAttributes.SCOPE_REQUEST);
+    }
+  }
+
+  private synchronized void cache(String email, User user, long observedInvalidations) {
+    if (maxEntries <= 0 || ttlMs <= 0 || invalidations != observedInvalidations) {
+      return;
+    }
+    entries.put(email, new Entry(user, System.currentTimeMillis()));
+    Iterator<Entry> eldest = entries.values().iterator();
+    while (entries.size() > maxEntries && eldest.hasNext()) {
+      eldest.next();
+      eldest.remove();
+    }
+  }
+
+  /**
+   * Lookup counters: users found in the request or in the cache are database reads avoided.
+   *
+   * @return Map of request_hits, cache_hits and reads counts.
+   */
+  public Map<String, Long> getMetrics() {
+    Map<String, Long> metrics = new HashMap<>();
+    metrics.put("request_hits", requestHits.get());
+    metrics.put("cache_hits", cacheHits.get());
+    metrics.put("reads", reads.get());
+    return metrics;
+  }
+}
@@ -0,0 +1,150 @@
+package mflix.api.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Least recently used cache of the JWTs whose signature has been verified, with their subject and
+ * expiry, so that repeated requests with the same token skip the parsing and HMAC verification.
+ *
+ * <p>Tokens are keyed by a 64 bits FNV-1a hash, and the token is compared on a hit, so a hash
+ * collision is only a miss. A token is never served past its expiry; once the cache holds
+ * `max_entries` tokens, the expired ones are removed before the least recently used ones.
+ */
+@Component
+public class VerifiedTokenCache {
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  /** Min time between two sweeps of the expired tokens, which scan the whole cache. */
+  private static final long SWEEP_INTERVAL_MS = 1000;
+
+  private static final class Entry {
+
+    private final String token;
+
+    private final String subject;
+
+    private final long expiresAt;
+
+    private Entry(String token, String subject, long expiresAt) {
+      this.token = token;
+      this.subject = subject;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private final boolean enabled;
+
+  private final int maxEntries;
+
+  private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+  private long sweptAt;
+
+  @Autowired
+  public VerifiedTokenCache(
+      @Value("${api.auth.token_cache.enabled}") boolean enabled,
+      @Value("${api.auth.token_cache.max_entries}") int maxEntries) {
+    this.enabled = enabled && maxEntries > 0;
+    this.maxEntries = maxEntries;
+  }
+
+  static long hash(String token) {
+    long hash = FNV_OFFSET_BASIS;
+    for (int i = 0; i < token.length(); i++) {
+      hash ^= token.charAt(i);
+      hash *= FNV_PRIME;
+    }
+    return hash;
+  }
+
+  /**
+   * Subject of a verified token.
+   *
+   * @param token - JWT, without the `Bearer` prefix.
+   * @return subject, or null if the token is not cached or has expired.
+   */
+  public String getSubject(String token) {
+    if (!enabled) {
+      return null;
+    }
+    long key = hash(token);
+    synchronized (this) {
+      Entry entry = entries.get(key);
+      if (entry == null || !entry.token.equals(token)) {
+        return null;
+      }
+      if (entry.expiresAt <= System.currentTimeMillis()) {
+        entries.remove(key);
+        return null;
+      }
+      return entry.subject;
+    }
+  }
+
+  /**
+   * Expiry of a verified token.
+   *
+   * @param token - JWT, without the `Bearer` prefix.
+   * @param subject - expected subject of the token.
+   * @return expiration time in epoch milliseconds, or 0 if the token of this subject is not cached.
+   */
+  public long getExpiresAt(String token, String subject) {
+    if (!enabled) {
+      return 0;
+    }
+    synchronized (this) {
+      Entry entry = entries.get(hash(token));
+      if (entry == null || !entry.token.equals(token) || !entry.subject.equals(subject)) {
+        return 0;
+      }
+      return entry.expiresAt;
+    }
+  }
+
+  /**
+   * Stores a token once its signature has been verified.
+   *
+   * @param token - JWT, without the `Bearer` prefix.
+   * @param subject - subject claim of the token.
+   * @param expiresAt - expiration time of the token, in epoch milliseconds.
+   */
+  public void put(String token, String subject, long expiresAt) {
+    long now = System.currentTimeMillis();
+    if (!enabled || subject == null || expiresAt <= now) {
+      return;
+    }
+    long key = hash(token);
+    synchronized (this) {
+      entries.put(key, new Entry(token, subject, expiresAt));
+      if (entries.size() <= maxEntries) {
+        return;
+      }
+      if (now - sweptAt >= SWEEP_INTERVAL_MS) {
+        sweptAt = now;
+        entries.values().removeIf(entry -> entry.expiresAt <= now);
+      }
+      Iterator<Entry> eldest = entries.values().iterator();
+      while (entries.size() > maxEntries && eldest.hasNext()) {
+        eldest.next();
+        eldest.remove();
+      }
+    }
+  }
+
+  /**
+   * Number of cached tokens.
+   *
+   * @return number of entries.
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+}
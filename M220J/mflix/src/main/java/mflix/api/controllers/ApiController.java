@@ -35,5 +35,5 @@ public abstract class ApiController {
   }
 
   @GetMapping(value = "/")
-  abstract ResponseEntity<Map> index();
+  abstract ResponseEntity<?> index();
 }
@@ -1,6 +1,9 @@
 package mflix.api.controllers;
 
+import mflix.api.security.PasswordHashingRejected;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -52,4 +55,11 @@ public class GlobalExceptionHandler {
                 })
             .collect(Collectors.toList()));
   }
+
+  @ExceptionHandler
+  public ResponseEntity<Map<String, String>> handle(PasswordHashingRejected exception) {
+    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+        .header(HttpHeaders.RETRY_AFTER, "1")
+        .body(Collections.singletonMap("error", exception.getMessage()));
+  }
 }
@@ -1,15 +1,25 @@
 package mflix.api.controllers;
 
+import mflix.api.daos.MovieDao;
+import mflix.api.models.FacetedMoviesPage;
+import mflix.api.models.FacetedMoviesResult;
 import mflix.api.models.Movie;
+import mflix.api.models.MovieSearchCriteria;
+import mflix.api.models.MoviesPage;
+import mflix.api.models.MoviesResult;
+import mflix.api.services.MovieVersionService;
 import mflix.api.services.MoviesService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.validation.constraints.Min;
 import javax.validation.constraints.Size;
+import java.text.MessageFormat;
 import java.util.*;
+import java.util.function.Supplier;
 
 @RestController
 @CrossOrigin(origins = "*")
@@ -18,6 +28,8 @@ public class MovieController extends ApiController {
 
   @Autowired private MoviesService moviesService;
 
+  @Autowired private MovieVersionService movieVersionService;
+
   @Value("${api.movies.movies_per_page}")
   private int MOVIES_PER_PAGE = 20;
 
@@ -25,40 +37,77 @@ public class MovieController extends ApiController {
     super();
   }
 
-  private ResponseEntity<Map> buildOkResponse(Map<String, ?> moviesResults, int page, Map filters) {
+  private ResponseEntity<MoviesPage> buildOkResponse(
+      Supplier<MoviesResult<?>> moviesResults, int page, Map<String, ?> filters) {
     return buildOkResponse(moviesResults, page, filters, "movies");
   }
 
-  private ResponseEntity<Map> buildOkResponse(
-      Map<String, ?> moviesResults, int page, Map filters, String resultsKey) {
-
-    Map<String, Object> results = new HashMap<>();
-    results.put(resultsKey, moviesResults.get("movies_list"));
-    results.put("page", page);
-    results.put("entries_per_page", MOVIES_PER_PAGE);
-    if (moviesResults.containsKey("movies_count")) {
-      results.put("total_results", moviesResults.get("movies_count"));
-    }
-
-    results.put("filters", filters);
+  private ResponseEntity<MoviesPage> buildOkResponse(
+      Supplier<MoviesResult<?>> moviesResults,
+      int page,
+      Map<String, ?> filters,
+      String resultsKey) {
+    // observed before reading the movies, so that cached movie JSON is never older than the page
+    long catalogVersion = movieVersionService.getCatalogVersion();
+    return ResponseEntity.ok(
+        new MoviesPage(
+            resultsKey, moviesResults.get(), page, MOVIES_PER_PAGE, filters, catalogVersion));
+  }
 
-    return ResponseEntity.ok(results);
+  private ResponseEntity<?> badSortResponse(String message, String sort) {
+    Map<String, String> error = new HashMap<>();
+    error.put("error", MessageFormat.format(message, sort));
+    return ResponseEntity.badRequest().body(error);
   }
 
   @Override
-  ResponseEntity<Map> index() {
-    return buildOkResponse(moviesService.getMovies(MOVIES_PER_PAGE, 0), 0, Collections.emptyMap());
+  ResponseEntity<?> index() {
+    return buildOkResponse(
+        () -> moviesService.getMovies(MOVIES_PER_PAGE, 0), 0, Collections.emptyMap());
+  }
+
+  @GetMapping(value = "/", params = "sort")
+  ResponseEntity<?> index(@RequestParam(value = "sort") String sort) {
+    MovieDao.IndexedSort indexedSort = MovieDao.IndexedSort.fromParam(sort);
+    if (indexedSort == null) {
+      return badSortResponse("sort `{0}` is not supported", sort);
+    }
+    MovieSearchCriteria criteria = new MovieSearchCriteria();
+    if (!indexedSort.canServe(criteria)) {
+      return badSortResponse("sort `{0}` requires a genre filter", sort);
+    }
+    if (indexedSort == MovieDao.IndexedSort.NUM_REVIEWS) {
+      return index();
+    }
+    return buildOkResponse(
+        () -> moviesService.searchMovies(MOVIES_PER_PAGE, 0, criteria, indexedSort),
+        0,
+        Collections.singletonMap("sort", indexedSort.name().toLowerCase()));
   }
 
   @GetMapping(value = "/id/{movieId}")
-  ResponseEntity getMovie(@PathVariable(value = "movieId") String movieId) {
+  ResponseEntity getMovie(@PathVariable(value = "movieId") String movieId, WebRequest request) {
+    MovieVersionService.Validator cached = movieVersionService.getMovieValidator(movieId);
+    if (cached != null
+        && request.checkNotModified(cached.getETag(), cached.getLastModified())) {
+      return null;
+    }
+
     HashMap<String, Object> result = new HashMap<>();
+    long catalogVersion = movieVersionService.getCatalogVersion();
     Movie movie = moviesService.getMovie(movieId);
     if (movie == null) {
       result.put("error", "Not found");
       return ResponseEntity.badRequest().body(result);
     }
 
+    MovieVersionService.Validator validator =
+        movieVersionService.recordMovie(movieId, movie, catalogVersion);
+    if (cached == null
+        && request.checkNotModified(validator.getETag(), validator.getLastModified())) {
+      return null;
+    }
+
     result.put("movie", movie);
     result.put("api", "java");
     result.put("updated_type", moviesService.getMovieDocumentFieldType(movieId, "lastupdated"));
@@ -66,69 +115,148 @@ public class MovieController extends ApiController {
   }
 
   @GetMapping(value = "/countries")
-  public ResponseEntity<Map> moviesByCountry(
+  public ResponseEntity<?> moviesByCountry(
       @RequestParam(value = "countries") @Size(min = 1) ArrayList<String> countries) {
     return buildOkResponse(
-        moviesService.getMoviesByCountry(countries.toArray(new String[0])),
+        () -> moviesService.getMoviesByCountry(countries.toArray(new String[0])),
         0,
         Collections.EMPTY_MAP,
         "titles");
   }
 
   @GetMapping(value = "/search")
-  public ResponseEntity<Map> search(
+  public ResponseEntity<?> search(
       @RequestParam(value = "page", required = false, defaultValue = "0") @Min(0) Integer page,
       @RequestParam(value = "text", required = false) ArrayList<String> text,
       @RequestParam(value = "cast", required = false) ArrayList<String> cast,
-      @RequestParam(value = "genre", required = false) ArrayList<String> genre) {
+      @RequestParam(value = "genre", required = false) ArrayList<String> genre,
+      @RequestParam(value = "sort", required = false) String sort) {
 
-    Map<String, List<String>> filters = new HashMap<>();
+    MovieSearchCriteria criteria = new MovieSearchCriteria();
+    criteria.setText(text);
+    criteria.setCast(cast);
+    criteria.setGenres(genre);
+
+    Map<String, Object> filters = new HashMap<>();
     if (text != null) {
       filters.put("text", text);
+    }
+    if (cast != null) {
+      filters.put("cast", cast);
+    }
+    if (genre != null) {
+      filters.put("genre", genre);
+    }
+
+    if (sort != null) {
+      MovieDao.IndexedSort indexedSort = MovieDao.IndexedSort.fromParam(sort);
+      if (indexedSort == null) {
+        return badSortResponse("sort `{0}` is not supported", sort);
+      }
+      if (!indexedSort.canServe(criteria)) {
+        return badSortResponse(
+            text != null
+                ? "sort `{0}` cannot be used with text search"
+                : "sort `{0}` requires a genre filter",
+            sort);
+      }
+      if (filters.isEmpty()) {
+        return index(sort);
+      }
+      filters.put("sort", indexedSort.name().toLowerCase());
+      if (indexedSort != MovieDao.IndexedSort.NUM_REVIEWS) {
+        return buildOkResponse(
+            () -> moviesService.searchMovies(MOVIES_PER_PAGE, page, criteria, indexedSort),
+            page,
+            filters);
+      }
+    }
+
+    int filtersCount =
+        (text != null ? 1 : 0) + (cast != null ? 1 : 0) + (genre != null ? 1 : 0);
+    if (filtersCount > 1) {
+      return buildOkResponse(
+          () -> moviesService.searchMovies(MOVIES_PER_PAGE, page, criteria), page, filters);
+    }
+
+    if (text != null) {
       return buildOkResponse(
-          moviesService.getMoviesByText(MOVIES_PER_PAGE, page, text), page, filters);
+          () -> moviesService.getMoviesByText(MOVIES_PER_PAGE, page, text), page, filters);
     }
 
     if (cast != null) {
-      filters.put("cast", cast);
       return buildOkResponse(
-          moviesService.getMoviesByCast(MOVIES_PER_PAGE, page, cast), page, filters);
+          () -> moviesService.getMoviesByCast(MOVIES_PER_PAGE, page, cast), page, filters);
     }
 
     if (genre != null) {
-      filters.put("genre", genre);
       return buildOkResponse(
-          moviesService.getMoviesByGenre(MOVIES_PER_PAGE, page, genre), page, filters);
+          () -> moviesService.getMoviesByGenre(MOVIES_PER_PAGE, page, genre), page, filters);
     }
 
     return index();
   }
 
+  @GetMapping(value = "/range-search")
+  public ResponseEntity<?> rangeSearch(
+      @RequestParam(value = "page", required = false, defaultValue = "0") @Min(0) Integer page,
+      @RequestParam(value = "genre") @Size(min = 1) ArrayList<String> genre,
+      @RequestParam(value = "imdb_rating_min", required = false) Double minRating,
+      @RequestParam(value = "imdb_rating_max", required = false) Double maxRating,
+      @RequestParam(value = "metacritic_min", required = false) Integer minMetacritic,
+      @RequestParam(value = "metacritic_max", required = false) Integer maxMetacritic,
+      @RequestParam(value = "year_min", required = false) Integer minYear,
+      @RequestParam(value = "year_max", required = false) Integer maxYear,
+      @RequestParam(value = "sort", required = false, defaultValue = "imdb_rating_desc")
+          String sort) {
+
+    MovieDao.IndexedSort indexedSort = MovieDao.IndexedSort.fromParam(sort);
+    if (indexedSort == null) {
+      return badSortResponse("sort `{0}` is not supported", sort);
+    }
+
+    MovieSearchCriteria criteria = new MovieSearchCriteria();
+    criteria.setGenres(genre);
+    criteria.setMinRating(minRating);
+    criteria.setMaxRating(maxRating);
+    criteria.setMinMetacritic(minMetacritic);
+    criteria.setMaxMetacritic(maxMetacritic);
+    criteria.setMinYear(minYear);
+    criteria.setMaxYear(maxYear);
+
+    Map<String, Object> filters = new HashMap<>();
+    filters.put("genre", genre);
+    filters.put("imdb_rating_min", minRating);
+    filters.put("imdb_rating_max", maxRating);
+    filters.put("metacritic_min", minMetacritic);
+    filters.put("metacritic_max", maxMetacritic);
+    filters.put("year_min", minYear);
+    filters.put("year_max", maxYear);
+    filters.values().removeIf(Objects::isNull);
+    filters.put("sort", indexedSort.name().toLowerCase());
+
+    return buildOkResponse(
+        () -> moviesService.getMoviesByRange(MOVIES_PER_PAGE, page, criteria, indexedSort),
+        page,
+        filters);
+  }
+
   @RequestMapping(value = "/facet-search", method = RequestMethod.GET)
-  public ResponseEntity<Map> apiSearchMoviesFaceted(
+  public ResponseEntity<?> apiSearchMoviesFaceted(
       @RequestParam(value = "page", required = false, defaultValue = "0") Integer page,
       @RequestParam(value = "cast", required = false) @Size(min = 1) ArrayList<String> cast) {
 
     Map<String, List<String>> filters = new HashMap<>();
     filters.put("cast", cast);
-    Map<String, ?> results = moviesService.getMovieFacetedSearch(cast, page, MOVIES_PER_PAGE);
+    long catalogVersion = movieVersionService.getCatalogVersion();
+    FacetedMoviesResult results = moviesService.getMovieFacetedSearch(cast, page, MOVIES_PER_PAGE);
 
-    if (results.get("movies") == null) {
+    if (results == null) {
       return ResponseEntity.notFound().build();
     }
 
-    Map<String, Object> facets = new HashMap<>();
-    facets.put("runtime", results.get("runtime"));
-    facets.put("rating", results.get("rating"));
-
-    HashMap<String, Object> response = new HashMap<>();
-    response.put("movies", results.get("movies"));
-    response.put("facets", facets);
-    response.put("total_results", results.get("count"));
-    response.put("entries_per_page", MOVIES_PER_PAGE);
-    response.put("filters", filters);
-    response.put("page", page);
-    return ResponseEntity.ok(response);
+    return ResponseEntity.ok(
+        new FacetedMoviesPage(results, page, MOVIES_PER_PAGE, filters, catalogVersion));
   }
 
   @PutMapping(value = "/comment")
@@ -145,7 +273,7 @@ public class MovieController extends ApiController {
     if (!moviesService.updateMovieComment(body, email, results)) {
       return ResponseEntity.badRequest().body(results);
     }
-    results.put("auth_token", tokenProvider.mintJWTHeader(email));
+    results.put("auth_token", tokenProvider.refreshJWTHeader(authorizationToken, email));
     return ResponseEntity.ok(results);
   }
 
@@ -162,7 +290,7 @@ public class MovieController extends ApiController {
       return ResponseEntity.badRequest().body(results);
     }
 
-    results.put("auth_token", tokenProvider.mintJWTHeader(email));
+    results.put("auth_token", tokenProvider.refreshJWTHeader(authorizationToken, email));
     return ResponseEntity.ok(results);
   }
 
@@ -23,6 +23,11 @@ import java.util.Map;
 @RestController
 public class UserController extends ApiController {
 
+  private static final int REPORT_PER_PAGE = 20;
+
+  /** Last comment report page served, which bounds the number of skipped report entries. */
+  private static final int MAX_REPORT_PAGE = 500;
+
   @Autowired UserService userService;
 
   @Autowired MoviesService moviesService;
@@ -56,12 +61,12 @@ public class UserController extends ApiController {
 
     Map<String, String> results = new HashMap<>();
 
-    User user = userService.createUser(register, results);
+    User user = userService.registerUser(register, results);
     if (user == null || user.isEmpty()) {
       return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(results);
     }
 
-    return authenticateUser(new Login(register.getEmail(), register.getPassword()));
+    return buildSuccess(results.get("auth_token"), user);
   }
 
   @PostMapping("/logout")
@@ -101,26 +106,29 @@ public class UserController extends ApiController {
       results.put("status", "fail");
       return ResponseEntity.badRequest().body(results);
     }
-    results.put("auth_token", tokenProvider.mintJWTHeader(email));
+    results.put("auth_token", tokenProvider.refreshJWTHeader(authorizationToken, email));
     return ResponseEntity.ok(results);
   }
 
   @PostMapping("/make-admin")
   public ResponseEntity makeUserAdmin(@RequestBody UserRegistry registry) {
     Map<String, String> results = new HashMap<>();
-    User user = userService.createAdminUser(registry, results);
+    User user = userService.registerAdminUser(registry, results);
 
     if (user == null || user.isEmpty()) {
       results.put("status", "fail");
       return ResponseEntity.badRequest().body(results);
     }
 
-    return authenticateUser(new Login(registry.getEmail(), registry.getPassword()));
+    return buildSuccess(results.get("auth_token"), user);
   }
 
   @GetMapping("/comment-report")
   public ResponseEntity getCommentReport(
-      @RequestHeader("Authorization") String authorizationToken) {
+      @RequestHeader("Authorization") String authorizationToken,
+      @RequestParam(value = "window", required = false) String window,
+      @RequestParam(value = "by", required = false, defaultValue = "user") String by,
+      @RequestParam(value = "page", required = false, defaultValue = "0") Integer page) {
     String email = getEmailFromRequest(authorizationToken);
     Map<String, Object> results = new HashMap<>();
     User user = userService.loadUser(email);
@@ -129,8 +137,27 @@ public class UserController extends ApiController {
       return ResponseEntity.status(401).body(results);
     }
 
-    results.put("auth_token", tokenProvider.mintJWTHeader(email));
-    results.put("report", moviesService.mostActiveUsers());
+    results.put("auth_token", tokenProvider.refreshJWTHeader(authorizationToken, email));
+    if (!"user".equals(by) && !"movie".equals(by)) {
+      results.put("error", "by must be one of user or movie");
+      return ResponseEntity.badRequest().body(results);
+    }
+    if (window == null) {
+      results.put("report", moviesService.mostActiveUsers());
+      return ResponseEntity.ok(results);
+    }
+    int reportPage = Math.min(Math.max(0, page), MAX_REPORT_PAGE);
+    try {
+      results.put(
+          "report",
+          moviesService.commentReport(window, "movie".equals(by), reportPage, REPORT_PER_PAGE));
+    } catch (IllegalArgumentException e) {
+      results.put("error", "window must be one of day, week or month");
+      return ResponseEntity.badRequest().body(results);
+    }
+    results.put("window", window);
+    results.put("by", by);
+    results.put("page", reportPage);
     return ResponseEntity.ok(results);
   }
 
@@ -0,0 +1,422 @@
+package mflix.api.daos;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.ReadConcern;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.PushOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.UpdateResult;
+
+import mflix.api.models.Comment;
+import mflix.api.models.Critic;
+
+/**
+ * {@link CommentDao} over the bucket layout of the `comment_buckets` collection, enabled with
+ * `api.comments.storage=bucketed`. Each bucket holds up to `bucket_size` comments of one movie,
+ * newest first, so that a movie page reads a few documents instead of one per comment:
+ *
+ * <p>{_id: ObjectId, movie_id: ObjectId, n: 0, count: 3, comments: [{_id, name, email, text,
+ * date, edited_at}]}
+ *
+ * <p>`n` numbers the buckets of a movie from 0, and is unique per movie, so that concurrent
+ * inserts cannot open two buckets at once. `count` is the number of comments ever pushed to the
+ * bucket and is not decremented by deletes, so only the most recent bucket of a movie has room
+ * left and new comments always land in it. Edits set `edited_at` and keep `date`, so comments
+ * stay in `date` order, as in the flat layout.
+ */
+@Component
+@ConditionalOnProperty(name = "api.comments.storage", havingValue = "bucketed")
+public class BucketedCommentDao extends CommentDao {
+
+  public static final String BUCKETS_COLLECTION = "comment_buckets";
+
+  /** Serves the buckets of a movie, most recent first, and numbers them uniquely. */
+  static final Bson MOVIE_BUCKETS_INDEX =
+      Indexes.compoundIndex(Indexes.ascending("movie_id"), Indexes.descending("n"));
+
+  /** Serves the lookups of a single comment. */
+  static final Bson COMMENT_ID_INDEX = Indexes.ascending("comments._id");
+
+  private final MongoCollection<Document> bucketsCollection;
+
+  private final int bucketSize;
+
+  @Autowired
+  public BucketedCommentDao(
+      MongoClient mongoClient,
+      @Value("${spring.mongodb.database}") String databaseName,
+      @Value("${api.comments.bucket_size}") int bucketSize) {
+    super(mongoClient, databaseName);
+    this.bucketsCollection = db.getCollection(BUCKETS_COLLECTION);
+    this.bucketSize = Math.max(1, bucketSize);
+  }
+
+  /**
+   * Builds a bucket document.
+   *
+   * @param movieId - id of the commented movie.
+   * @param n - number of the bucket among the buckets of the movie, oldest first.
+   * @param newestFirst - comments of the bucket, most recent first.
+   * @return bucket document, with a new `_id`.
+   */
+  public static Document bucket(ObjectId movieId, int n, List<Comment> newestFirst) {
+    List<Document> comments = new ArrayList<>(newestFirst.size());
+    for (Comment comment : newestFirst) {
+      comments.add(toDocument(comment));
+    }
+    return new Document("_id", new ObjectId())
+        .append("movie_id", movieId)
+        .append("n", n)
+        .append("count", comments.size())
+        .append("comments", comments);
+  }
+
+  private static Document toDocument(Comment comment) {
+    Document document =
+        new Document("_id", comment.getOid())
+            .append("name", comment.getName())
+            .append("email", comment.getEmail())
+            .append("text", comment.getText())
+            .append("date", comment.getDate());
+    if (comment.getEditedAt() != null) {
+      document.append("edited_at", comment.getEditedAt());
+    }
+    return document;
+  }
+
+  private static Comment toComment(ObjectId movieId, Document document) {
+    Comment comment = new Comment();
+    comment.setOid(document.getObjectId("_id"));
+    comment.setMovieObjectId(movieId);
+    comment.setName(document.getString("name"));
+    comment.setEmail(document.getString("email"));
+    comment.setText(document.getString("text"));
+    comment.setDate(document.getDate("date"));
+    comment.setEditedAt(document.getDate("edited_at"));
+    return comment;
+  }
+
+  /** Matches the bucket holding a comment, optionally only if the comment has the given author. */
+  private static Bson commentFilter(ObjectId commentId, String email) {
+    Bson comment = Filters.eq("_id", commentId);
+    if (email != null) {
+      comment = Filters.and(comment, Filters.eq("email", email));
+    }
+    return Filters.elemMatch("comments", comment);
+  }
+
+  @Override
+  public void createIndexes() {
+    try {
+      bucketsCollection.createIndex(MOVIE_BUCKETS_INDEX, new IndexOptions().unique(true));
+      bucketsCollection.createIndex(COMMENT_ID_INDEX);
+    } catch (MongoException e) {
+      log.warn("Could not create the `comment_buckets` indexes: {}", e.getMessage());
+    }
+  }
+
+  @Override
+  public Comment getComment(String id) {
+    ObjectId commentId = new ObjectId(id);
+    Document bucket =
+        bucketsCollection
+            .find(commentFilter(commentId, null))
+            .projection(
+                Projections.fields(
+                    Projections.include("movie_id"),
+                    Projections.elemMatch("comments", Filters.eq("_id", commentId))))
+            .first();
+    if (bucket == null) {
+      return null;
+    }
+    @SuppressWarnings("unchecked")
+    List<Document> comments = (List<Document>) bucket.get("comments");
+    return toComment(bucket.getObjectId("movie_id"), comments.get(0));
+  }
+
+  /**
+   * Pushes a comment at the front of the most recent bucket of its movie, or into a new bucket if
+   * that one is full. A new bucket is upserted on the next `n` of the movie, so when concurrent
+   * inserts race for it, one creates the bucket and the others push into it, or move on to the
+   * following `n` on a duplicate key error if it filled up in the meantime.
+   *
+   * @param comment - Comment object.
+   * @return the Comment object, or null if the write failed.
+   */
+  @Override
+  public Comment addComment(Comment comment) {
+    if (comment.getId() == null || comment.getId().isEmpty()) {
+      throw new IncorrectDaoOperation("Comment objects need to have an id field set.");
+    }
+    ObjectId movieId = comment.getMovieObjectId();
+    Bson push =
+        Updates.combine(
+            Updates.pushEach(
+                "comments", Arrays.asList(toDocument(comment)), new PushOptions().position(0)),
+            Updates.inc("count", 1));
+    try {
+      // only the most recent bucket of a movie can have room left
+      UpdateResult result =
+          bucketsCollection.updateOne(
+              Filters.and(Filters.eq("movie_id", movieId), Filters.lt("count", bucketSize)),
+              push);
+      while (result.getMatchedCount() == 0 && result.getUpsertedId() == null) {
+        Document last =
+            bucketsCollection
+                .find(Filters.eq("movie_id", movieId))
+                .sort(Sorts.descending("n"))
+                .projection(Projections.include("n", "count"))
+                .first();
+        int n = 0;
+        if (last != null) {
+          // the bucket may have been created since the first update
+          n = last.getInteger("n") + (last.getInteger("count") < bucketSize ? 0 : 1);
+        }
+        try {
+          result =
+              bucketsCollection.updateOne(
+                  Filters.and(
+                      Filters.eq("movie_id", movieId),
+                      Filters.eq("n", n),
+                      Filters.lt("count", bucketSize)),
+                  push,
+                  new UpdateOptions().upsert(true));
+        } catch (MongoWriteException e) {
+          if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY) {
+            throw e;
+          }
+        }
+      }
+      countComment(comment, 1);
+      return comment;
+    } catch (MongoException e) {
+      log.error("An error ocurred while trying to insert a Comment.");
+      return null;
+    }
+  }
+
+  @Override
+  public boolean updateComment(String commentId, String text, String email) {
+    try {
+      Document bucket =
+          bucketsCollection.findOneAndUpdate(
+              commentFilter(new ObjectId(commentId), email),
+              Updates.combine(
+                  Updates.set("comments.$.text", text),
+                  Updates.set("comments.$.edited_at", new Date())),
+              new FindOneAndUpdateOptions().projection(Projections.include("movie_id")));
+      if (bucket == null) {
+        return false;
+      }
+      commentsEdited(Collections.singleton(bucket.getObjectId("movie_id")));
+      return true;
+    } catch (MongoException e) {
+      log.error("An error ocurred while trying to update a Comment.");
+      return false;
+    }
+  }
+
+  /**
+   * Updates the text of a comment if it is owned by `email`, and returns the comment as it was
+   * before the update, in a single round trip. The update pipeline rewrites the comments array of
+   * the bucket, replacing only the comment with the given id and author.
+   */
+  @Override
+  public Comment findAndUpdateComment(
+      String commentId, String text, String email, Date editedAt) {
+    ObjectId id = new ObjectId(commentId);
+    Document owned =
+        new Document(
+            "$and",
+            Arrays.asList(
+                new Document("$eq", Arrays.asList("$$this._id", id)),
+                new Document("$eq", Arrays.asList("$$this.email", email))));
+    Document edited =
+        new Document(
+            "$mergeObjects",
+            Arrays.asList(
+                "$$this",
+                new Document("text", new Document("$literal", text))
+                    .append("edited_at", editedAt)));
+    Document update =
+        new Document(
+            "$set",
+            new Document(
+                "comments",
+                new Document(
+                    "$map",
+                    new Document("input", "$comments")
+                        .append(
+                            "in", new Document("$cond", Arrays.asList(owned, edited, "$$this"))))));
+    Document command =
+        new Document("findAndModify", BUCKETS_COLLECTION)
+            .append("query", new Document("comments._id", id))
+            .append(
+                "fields",
+                new Document("movie_id", 1)
+                    .append("comments", new Document("$elemMatch", new Document("_id", id))))
+            .append("update", Collections.singletonList(update));
+    try {
+      Document bucket = (Document) db.runCommand(command).get("value");
+      if (bucket == null) {
+        return null;
+      }
+      @SuppressWarnings("unchecked")
+      List<Document> comments = (List<Document>) bucket.get("comments");
+      Comment previous = toComment(bucket.getObjectId("movie_id"), comments.get(0));
+      if (email.equals(previous.getEmail())) {
+        commentsEdited(Collections.singleton(previous.getMovieObjectId()));
+      }
+      return previous;
+    } catch (MongoException e) {
+      throw new IncorrectDaoOperation(
+          MessageFormat.format("Could not update comment `{0}`", commentId), e);
+    }
+  }
+
+  @Override
+  public BulkWriteResult moderateComments(
+      Map<String, String> textUpdates, Collection<String> deleteIds) {
+    List<ObjectId> ids = new ArrayList<>(deleteIds.size() + textUpdates.size());
+    for (String id : deleteIds) {
+      ids.add(new ObjectId(id));
+    }
+    for (String id : textUpdates.keySet()) {
+      ids.add(new ObjectId(id));
+    }
+    List<Comment> moderated = new ArrayList<>();
+    if (!ids.isEmpty()) {
+      List<Bson> pipeline =
+          new ArrayList<>(CommentStorage.BUCKETED.comments(Filters.in("comments._id", ids), false));
+      pipeline.add(Aggregates.match(Filters.in("_id", ids)));
+      pipeline.add(Aggregates.project(Projections.include("movie_id", "email")));
+      bucketsCollection
+          .withCodecRegistry(pojoCodecRegistry)
+          .aggregate(pipeline, Comment.class)
+          .into(moderated);
+    }
+    List<Comment> edited = new ArrayList<>();
+    List<Comment> deleted = new ArrayList<>();
+    splitModerated(moderated, deleteIds, edited, deleted);
+
+    List<WriteModel<Document>> writes = new ArrayList<>(textUpdates.size() + deleted.size());
+    textUpdates.forEach(
+        (id, text) ->
+            writes.add(
+                new UpdateOneModel<>(
+                    Filters.eq("comments._id", new ObjectId(id)),
+                    Updates.set("comments.$.text", text))));
+    for (Comment comment : deleted) {
+      writes.add(
+          new UpdateOneModel<>(
+              Filters.eq("comments._id", comment.getOid()),
+              Updates.pull("comments", new Document("_id", comment.getOid()))));
+    }
+    if (writes.isEmpty()) {
+      return BulkWriteResult.acknowledged(0, 0, 0, 0, Collections.emptyList());
+    }
+    return moderate(bucketsCollection, writes, textUpdates.size(), edited, deleted);
+  }
+
+  @Override
+  public boolean deleteComment(String commentId, String email) {
+    if (commentId == null) {
+      throw new IllegalArgumentException("Commend id cannot be null");
+    }
+    ObjectId id = new ObjectId(commentId);
+    try {
+      Document bucket =
+          bucketsCollection.findOneAndUpdate(
+              commentFilter(id, email),
+              Updates.pull("comments", new Document("_id", id)),
+              new FindOneAndUpdateOptions().projection(Projections.include("movie_id")));
+      if (bucket == null) {
+        log.error("Could not delete comment `{}` owned by `{}`", commentId, email);
+        return false;
+      }
+      Comment deleted = new Comment();
+      deleted.setOid(id);
+      deleted.setEmail(email);
+      deleted.setMovieObjectId(bucket.getObjectId("movie_id"));
+      countComment(deleted, -1);
+      return true;
+    } catch (MongoException e) {
+      log.error("An error ocurred while trying to delete a Comment.");
+      return false;
+    }
+  }
+
+  @Override
+  public List<Comment> getMovieComments(String movieId, int limit) {
+    List<Comment> comments = new ArrayList<>();
+    if (movieId == null || !ObjectId.isValid(movieId)) {
+      return comments;
+    }
+    ObjectId id = new ObjectId(movieId);
+    try (MongoCursor<Document> buckets =
+        bucketsCollection
+            .find(Filters.eq("movie_id", id))
+            .sort(Sorts.descending("n"))
+            .batchSize(limit / bucketSize + 2)
+            .iterator()) {
+      while (buckets.hasNext() && comments.size() < limit) {
+        @SuppressWarnings("unchecked")
+        List<Document> bucketComments = (List<Document>) buckets.next().get("comments");
+        for (Document comment : bucketComments) {
+          if (comments.size() == limit) {
+            break;
+          }
+          comments.add(toComment(id, comment));
+        }
+      }
+    }
+    return comments;
+  }
+
+  @Override
+  public List<Critic> mostActiveCommenters() {
+    if (leaderboard != null && leaderboard.isReady()) {
+      return leaderboard.getTopCommenters(20);
+    }
+    List<Bson> pipeline = new ArrayList<>(CommentStorage.BUCKETED.comments(new Document(), false));
+    pipeline.add(Aggregates.sortByCount("$email"));
+    pipeline.add(Aggregates.limit(20));
+    return bucketsCollection
+        .withCodecRegistry(pojoCodecRegistry)
+        .withReadConcern(ReadConcern.MAJORITY)
+        .aggregate(pipeline, Critic.class)
+        .into(new ArrayList<>());
+  }
+}
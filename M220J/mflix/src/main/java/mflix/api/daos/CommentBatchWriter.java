@@ -0,0 +1,266 @@
+package mflix.api.daos;
+
+import static org.bson.codecs.configuration.CodecRegistries.fromProviders;
+import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.bson.Document;
+import org.bson.codecs.pojo.PojoCodecProvider;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+
+import mflix.api.models.Comment;
+
+/**
+ * Group commit writer of new comments. Comments submitted while a batch is being written, or
+ * within `window_ms` of the first comment of a batch, are inserted together with a single
+ * unordered `insertMany`, so that concurrent posts share one `w:majority` round trip.
+ *
+ * <p>Every caller gets a future that completes once the batch is acknowledged, or fails with the
+ * write error of its own comment.
+ */
+@Component
+public class CommentBatchWriter extends AbstractMFlixDao {
+
+  /**
+   * Max time a caller waits for the batch of its comment, well above the `w:majority` timeout of
+   * the client, so that a stuck writer cannot block comment posts forever.
+   */
+  public static final long INSERT_TIMEOUT_MS = 10_000;
+
+  /** Comment waiting to be written, with the future of its caller. */
+  private static final class Pending {
+
+    private final Comment comment;
+
+    private final CompletableFuture<Comment> future = new CompletableFuture<>();
+
+    private Pending(Comment comment) {
+      this.comment = comment;
+    }
+  }
+
+  private final MongoCollection<Comment> commentCollection;
+
+  private final MongoCollection<Document> moviesCollection;
+
+  private final boolean enabled;
+
+  private final long windowNanos;
+
+  private final int maxBatch;
+
+  private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+
+  private final Logger log;
+
+  private CommenterLeaderboard leaderboard;
+
+  private volatile boolean running;
+
+  private Thread writerThread;
+
+  @Autowired
+  public CommentBatchWriter(
+      MongoClient mongoClient,
+      @Value("${spring.mongodb.database}") String databaseName,
+      @Value("${api.comments.batch_writer.enabled}") boolean enabled,
+      @Value("${api.comments.batch_writer.window_ms}") long windowMs,
+      @Value("${api.comments.batch_writer.max_batch}") int maxBatch) {
+    super(mongoClient, databaseName);
+    log = LoggerFactory.getLogger(this.getClass());
+    this.commentCollection =
+        db.getCollection(CommentDao.COMMENT_COLLECTION, Comment.class)
+            .withCodecRegistry(
+                fromRegistries(
+                    MongoClientSettings.getDefaultCodecRegistry(),
+                    fromProviders(PojoCodecProvider.builder().automatic(true).build())));
+    this.moviesCollection = db.getCollection(MovieDao.MOVIES_COLLECTION);
+    this.enabled = enabled;
+    this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+    this.maxBatch = Math.max(1, maxBatch);
+  }
+
+  /**
+   * Sets the commenter leaderboard, incremented once per batch.
+   *
+   * @param leaderboard - commenter leaderboard.
+   */
+  @Autowired(required = false)
+  public void setLeaderboard(CommenterLeaderboard leaderboard) {
+    this.leaderboard = leaderboard;
+  }
+
+  @PostConstruct
+  public synchronized void start() {
+    if (enabled && writerThread == null) {
+      running = true;
+      writerThread = new Thread(this::write, "comments-batch-writer");
+      writerThread.setDaemon(true);
+      writerThread.start();
+    }
+  }
+
+  /**
+   * Tells whether comments submitted now will be written.
+   *
+   * @return true if the writer thread is running.
+   */
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Queues a comment for the next batch.
+   *
+   * @param comment - Comment object, with its id set.
+   * @return future completed with the comment once its batch is acknowledged.
+   */
+  public CompletableFuture<Comment> insert(Comment comment) {
+    Pending pending = new Pending(comment);
+    queue.add(pending);
+    // the writer drains the queue once after stopping; anything queued later is refused
+    if (!running && queue.remove(pending)) {
+      pending.future.completeExceptionally(new MongoException("Comments writer is stopped"));
+    }
+    return pending.future;
+  }
+
+  @PreDestroy
+  public synchronized void stop() {
+    running = false;
+    if (writerThread != null) {
+      writerThread.interrupt();
+      writerThread = null;
+    }
+  }
+
+  private void write() {
+    List<Pending> batch = new ArrayList<>(maxBatch);
+    try {
+      while (running) {
+        batch.add(queue.take());
+        long deadline = System.nanoTime() + windowNanos;
+        queue.drainTo(batch, maxBatch - batch.size());
+        while (batch.size() < maxBatch) {
+          Pending next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+          queue.drainTo(batch, maxBatch - batch.size());
+        }
+        flush(batch);
+        batch.clear();
+      }
+    } catch (InterruptedException e) {
+      running = false;
+    } finally {
+      if (running) {
+        log.error("Comments writer stopped unexpectedly, comments are now inserted one by one");
+        running = false;
+      }
+      // whatever was accepted before the writer stopped is still written
+      queue.drainTo(batch);
+      for (int from = 0; from < batch.size(); from += maxBatch) {
+        flush(batch.subList(from, Math.min(from + maxBatch, batch.size())));
+      }
+    }
+  }
+
+  /**
+   * Increments the comment counts of the movies and of the authors of the written comments, with
+   * one bulk write each.
+   */
+  private void countComments(List<Pending> written) {
+    Map<ObjectId, Integer> deltas = new HashMap<>();
+    Map<String, Integer> authors = new HashMap<>();
+    for (Pending pending : written) {
+      deltas.merge(pending.comment.getMovieObjectId(), 1, Integer::sum);
+      authors.merge(pending.comment.getEmail(), 1, Integer::sum);
+    }
+    // the comments are written at this point, a failure is left to the reconciler to repair
+    try {
+      CommentDao.incrementCommentCounts(moviesCollection, deltas);
+      if (leaderboard != null) {
+        leaderboard.increment(authors);
+      }
+    } catch (RuntimeException e) {
+      log.warn(
+          "Could not update the comment counts of {} movies: {}", deltas.size(), e.getMessage());
+    }
+  }
+
+  /**
+   * Writes a batch, completing the future of every comment. Any failure fails the futures of the
+   * batch rather than the writer thread, so that one bad comment cannot stop later batches.
+   */
+  private void flush(List<Pending> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    List<Comment> comments = new ArrayList<>(batch.size());
+    for (Pending pending : batch) {
+      comments.add(pending.comment);
+    }
+    try {
+      commentCollection.insertMany(comments, new InsertManyOptions().ordered(false));
+      countComments(batch);
+      batch.forEach(pending -> pending.future.complete(pending.comment));
+    } catch (MongoBulkWriteException e) {
+      if (e.getWriteConcernError() != null) {
+        log.error("Batch of {} comments not acknowledged: {}", batch.size(), e.getMessage());
+        batch.forEach(pending -> pending.future.completeExceptionally(e));
+        return;
+      }
+      Map<Integer, BulkWriteError> errors = new HashMap<>();
+      e.getWriteErrors().forEach(error -> errors.put(error.getIndex(), error));
+      List<Pending> written = new ArrayList<>(batch.size());
+      for (int i = 0; i < batch.size(); i++) {
+        if (!errors.containsKey(i)) {
+          written.add(batch.get(i));
+        }
+      }
+      countComments(written);
+      for (int i = 0; i < batch.size(); i++) {
+        BulkWriteError error = errors.get(i);
+        if (error == null) {
+          batch.get(i).future.complete(batch.get(i).comment);
+        } else {
+          batch
+              .get(i)
+              .future
+              .completeExceptionally(new MongoWriteException(error, e.getServerAddress()));
+        }
+      }
+    } catch (RuntimeException e) {
+      log.error(
+          "An error ocurred while trying to insert {} Comments: {}", batch.size(), e.getMessage());
+      batch.forEach(pending -> pending.future.completeExceptionally(e));
+    }
+  }
+}
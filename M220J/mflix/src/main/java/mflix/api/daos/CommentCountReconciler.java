@@ -0,0 +1,244 @@
+package mflix.api.daos;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+
+/**
+ * Repairs drift of the `num_mflix_comments` counters maintained by {@link CommentDao}. The
+ * `movies` `_id` range is split into `partitions` buckets, and for each of them, in parallel, the
+ * comments are counted with a `$group` on `movie_id` and compared with the stored counters.
+ *
+ * <p>A comment written during a run may be counted before its counter increment lands, so a
+ * mismatch is only repaired once two consecutive runs see it with the same stored and counted
+ * values, meaning that no write touched the movie in between. The counter is then only
+ * overwritten if it still holds the value that was compared.
+ */
+@Component
+public class CommentCountReconciler extends AbstractMFlixDao {
+
+  /** Stored counter and counted comments of a movie whose counter drifted. */
+  private static final class Mismatch {
+
+    private final Object counter;
+
+    private final int actual;
+
+    private Mismatch(Object counter, int actual) {
+      this.counter = counter;
+      this.actual = actual;
+    }
+
+    private boolean sameAs(Mismatch other) {
+      return other != null && actual == other.actual && Objects.equals(counter, other.counter);
+    }
+  }
+
+  private final MongoCollection<Document> moviesCollection;
+
+  private final CommentStorage commentStorage;
+
+  private final MongoCollection<Document> commentsCollection;
+
+  private final long intervalMinutes;
+
+  private final int partitions;
+
+  private final Logger log;
+
+  private ScheduledExecutorService scheduler;
+
+  /** Mismatches seen by the previous run, by movie id. */
+  private Map<ObjectId, Mismatch> previousMismatches = Collections.emptyMap();
+
+  @Autowired
+  public CommentCountReconciler(
+      MongoClient mongoClient,
+      @Value("${spring.mongodb.database}") String databaseName,
+      @Value("${api.comments.count_reconciler.interval_minutes}") long intervalMinutes,
+      @Value("${api.comments.count_reconciler.partitions}") int partitions,
+      @Value("${api.comments.storage}") String commentStorage) {
+    super(mongoClient, databaseName);
+    log = LoggerFactory.getLogger(this.getClass());
+    this.moviesCollection = db.getCollection(MovieDao.MOVIES_COLLECTION);
+    this.commentStorage = CommentStorage.fromProperty(commentStorage);
+    this.commentsCollection = db.getCollection(this.commentStorage.getCollection());
+    this.intervalMinutes = intervalMinutes;
+    this.partitions = Math.max(1, partitions);
+  }
+
+  @PostConstruct
+  public synchronized void start() {
+    if (intervalMinutes > 0 && scheduler == null) {
+      scheduler =
+          Executors.newSingleThreadScheduledExecutor(
+              runnable -> {
+                Thread thread = new Thread(runnable, "comment-count-reconciler");
+                thread.setDaemon(true);
+                return thread;
+              });
+      // the first run only records mismatches, so it is not delayed by a full interval
+      scheduler.scheduleWithFixedDelay(this::scheduledRun, 0, intervalMinutes, TimeUnit.MINUTES);
+    }
+  }
+
+  @PreDestroy
+  public synchronized void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+  }
+
+  private void scheduledRun() {
+    try {
+      reconcile();
+    } catch (RuntimeException e) {
+      log.error("Could not reconcile the movie comment counts: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Recomputes the comment count of every movie and repairs the counters that were already seen
+   * drifting by the previous run, with the same values.
+   *
+   * @return number of repaired movies.
+   */
+  public synchronized long reconcile() {
+    long start = System.currentTimeMillis();
+    List<Document> buckets =
+        moviesCollection
+            .aggregate(Collections.singletonList(Aggregates.bucketAuto("$_id", partitions)))
+            .into(new ArrayList<>());
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, buckets.size()));
+    Map<ObjectId, Mismatch> mismatches = new ConcurrentHashMap<>();
+    long repaired = 0;
+    try {
+      List<Future<Integer>> results = new ArrayList<>();
+      for (int i = 0; i < buckets.size(); i++) {
+        Document bounds = (Document) buckets.get(i).get("_id");
+        boolean last = i == buckets.size() - 1;
+        results.add(
+            executor.submit(
+                () -> reconcile(bounds.get("min"), bounds.get("max"), last, mismatches)));
+      }
+      for (Future<Integer> result : results) {
+        repaired += result.get();
+      }
+      previousMismatches = mismatches;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IncorrectDaoOperation("Interrupted while reconciling comment counts.", e);
+    } catch (ExecutionException e) {
+      throw new IncorrectDaoOperation("Could not reconcile comment counts.", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    log.info(
+        "Repaired the comment count of {} movies in {}ms, {} left to confirm",
+        repaired,
+        System.currentTimeMillis() - start,
+        mismatches.size() - repaired);
+    return repaired;
+  }
+
+  /**
+   * Reconciles the movies of one `_id` bucket.
+   *
+   * @param min - lower bound of the bucket, inclusive.
+   * @param max - upper bound of the bucket, exclusive unless `last` is set.
+   * @param last - whether this is the last bucket.
+   * @param mismatches - map the mismatches seen in the bucket are added to.
+   * @return number of repaired movies.
+   */
+  private int reconcile(
+      Object min, Object max, boolean last, Map<ObjectId, Mismatch> mismatches) {
+    // a comment written while the bucket is read can be counted before or after its counter
+    // increment, so a mismatch seen once may be a write in flight rather than drift
+    Map<ObjectId, Object> stored = new HashMap<>();
+    for (Document movie :
+        moviesCollection
+            .find(range("_id", min, max, last))
+            .projection(Projections.include(CommentDao.COMMENTS_COUNT_FIELD))) {
+      stored.put(movie.getObjectId("_id"), movie.get(CommentDao.COMMENTS_COUNT_FIELD));
+    }
+
+    List<Bson> pipeline = commentStorage.comments(range("movie_id", min, max, last), false);
+    pipeline.add(Aggregates.group("$movie_id", Accumulators.sum("count", 1)));
+    Map<ObjectId, Integer> counts = new HashMap<>();
+    for (Document count : commentsCollection.aggregate(pipeline)) {
+      counts.put(count.getObjectId("_id"), count.getInteger("count"));
+    }
+
+    List<WriteModel<Document>> repairs = new ArrayList<>();
+    stored.forEach(
+        (movieId, counter) -> {
+          int actual = counts.getOrDefault(movieId, 0);
+          if (counter instanceof Number && ((Number) counter).intValue() == actual) {
+            return;
+          }
+          Mismatch mismatch = new Mismatch(counter, actual);
+          mismatches.put(movieId, mismatch);
+          if (mismatch.sameAs(previousMismatches.get(movieId))) {
+            repairs.add(
+                new UpdateOneModel<>(
+                    Filters.and(
+                        Filters.eq("_id", movieId),
+                        Filters.eq(CommentDao.COMMENTS_COUNT_FIELD, counter)),
+                    Updates.set(CommentDao.COMMENTS_COUNT_FIELD, actual)));
+          }
+        });
+    if (repairs.isEmpty()) {
+      return 0;
+    }
+    try {
+      return moviesCollection
+          .bulkWrite(repairs, new BulkWriteOptions().ordered(false))
+          .getModifiedCount();
+    } catch (MongoException e) {
+      log.warn("Could not repair {} comment counts: {}", repairs.size(), e.getMessage());
+      return 0;
+    }
+  }
+
+  private static Bson range(String field, Object min, Object max, boolean last) {
+    // bucket upper bounds are exclusive, except for the last one
+    Bson upper = last ? Filters.lte(field, max) : Filters.lt(field, max);
+    return Filters.and(Filters.gte(field, min), upper);
+  }
+}
@@ -3,13 +3,28 @@ package mflix.api.daos;
 import static org.bson.codecs.configuration.CodecRegistries.fromProviders;
 import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
 
+import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import javax.annotation.PostConstruct;
+
+import org.bson.BsonDocumentReader;
 import org.bson.Document;
+import org.bson.codecs.DecoderContext;
 import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.codecs.pojo.PojoCodecProvider;
 import org.bson.conversions.Bson;
@@ -18,33 +33,62 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.MongoClientSettings;
 import com.mongodb.MongoException;
 import com.mongodb.ReadConcern;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
 import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
 import com.mongodb.client.model.Updates;
-import com.mongodb.client.result.DeleteResult;
-import com.mongodb.client.result.UpdateResult;
+import com.mongodb.client.model.WriteModel;
 
 import mflix.api.models.Comment;
 import mflix.api.models.Critic;
 
 @Component
+@ConditionalOnProperty(name = "api.comments.storage", havingValue = "flat", matchIfMissing = true)
 public class CommentDao extends AbstractMFlixDao {
 
   public static String COMMENT_COLLECTION = "comments";
 
+  /** Number of comments of a movie, kept on the movie document. */
+  public static final String COMMENTS_COUNT_FIELD = "num_mflix_comments";
+
+  /**
+   * Version of the comments of a movie, kept on the movie document and incremented by every comment
+   * write, so that the `movies` change stream tells every application instance about it.
+   */
+  public static final String COMMENTS_VERSION_FIELD = "comments_version";
+
+  /** Serves the comments of a movie, most recent first, as embedded by MovieDao.getMovie. */
+  static final Bson MOVIE_COMMENTS_INDEX =
+      Indexes.compoundIndex(Indexes.ascending("movie_id"), Indexes.descending("date"));
+
   private MongoCollection<Comment> commentCollection;
 
-  private CodecRegistry pojoCodecRegistry;
+  private final MongoCollection<Document> moviesCollection;
 
-  private final Logger log;
+  protected CodecRegistry pojoCodecRegistry;
+
+  protected final Logger log;
+
+  private CommentBatchWriter batchWriter;
+
+  protected CommenterLeaderboard leaderboard;
 
   @Autowired
   public CommentDao(
@@ -58,6 +102,144 @@ public class CommentDao extends AbstractMFlixDao {
             fromProviders(PojoCodecProvider.builder().automatic(true).build()));
     this.commentCollection =
         db.getCollection(COMMENT_COLLECTION, Comment.class).withCodecRegistry(pojoCodecRegistry);
+    this.moviesCollection = db.getCollection(MovieDao.MOVIES_COLLECTION);
+  }
+
+  /**
+   * Applies comment count changes to the movies with a single unordered bulk write, incrementing
+   * their comments version as well.
+   *
+   * @param moviesCollection - `movies` collection.
+   * @param deltas - change of the comment count, by movie id.
+   * @throws MongoException if any of the updates fails.
+   */
+  static void incrementCommentCounts(
+      MongoCollection<Document> moviesCollection, Map<ObjectId, Integer> deltas) {
+    List<WriteModel<Document>> updates = new ArrayList<>(deltas.size());
+    deltas.forEach(
+        (movieId, delta) ->
+            updates.add(
+                new UpdateOneModel<>(
+                    Filters.eq("_id", movieId),
+                    Updates.combine(
+                        Updates.inc(COMMENTS_COUNT_FIELD, delta),
+                        Updates.inc(COMMENTS_VERSION_FIELD, 1)))));
+    if (!updates.isEmpty()) {
+      moviesCollection.bulkWrite(updates, new BulkWriteOptions().ordered(false));
+    }
+  }
+
+  /**
+   * Adds `delta` to the comment count of the movie and to the leaderboard count of the author of a
+   * comment. The comment write is already done at this point, so a failure is only logged and left
+   * to {@link CommentCountReconciler} and to the leaderboard rebuild to repair.
+   */
+  protected void countComment(Comment comment, int delta) {
+    countComments(Collections.singletonList(comment), delta);
+  }
+
+  /**
+   * Adds `delta` per comment to the comment counts of their movies and authors, as {@link
+   * #countComment(Comment, int)} does.
+   */
+  protected void countComments(List<Comment> comments, int delta) {
+    if (comments.isEmpty()) {
+      return;
+    }
+    Map<ObjectId, Integer> movieDeltas = new HashMap<>();
+    Map<String, Integer> commenterDeltas = new HashMap<>();
+    for (Comment comment : comments) {
+      movieDeltas.merge(comment.getMovieObjectId(), delta, Integer::sum);
+      commenterDeltas.merge(comment.getEmail(), delta, Integer::sum);
+    }
+    try {
+      incrementCommentCounts(moviesCollection, movieDeltas);
+    } catch (MongoException e) {
+      log.warn("Could not update the comment count of movies {}: {}", movieDeltas, e.getMessage());
+    }
+    if (leaderboard != null) {
+      leaderboard.increment(commenterDeltas);
+    }
+  }
+
+  /**
+   * Increments the comments version of the movies whose comments were edited. Edits do not change
+   * the comment count, so without it the movie document, and the change stream, would not tell
+   * the other application instances that the movie page changed. A failure is only logged.
+   */
+  protected void commentsEdited(Collection<ObjectId> movieIds) {
+    if (movieIds.isEmpty()) {
+      return;
+    }
+    try {
+      moviesCollection.updateMany(
+          Filters.in("_id", movieIds), Updates.inc(COMMENTS_VERSION_FIELD, 1));
+    } catch (MongoException e) {
+      log.warn("Could not update the comments version of movies {}: {}", movieIds, e.getMessage());
+    }
+  }
+
+  /** Ids of the movies of some comments. */
+  protected static Set<ObjectId> movieIds(Collection<Comment> comments) {
+    Set<ObjectId> movieIds = new HashSet<>();
+    for (Comment comment : comments) {
+      movieIds.add(comment.getMovieObjectId());
+    }
+    return movieIds;
+  }
+
+  /**
+   * Sets the group commit writer of new comments. While it runs, {@link #addComment(Comment)}
+   * waits for the batch of its comment instead of issuing its own insert.
+   *
+   * @param batchWriter - comments batch writer.
+   */
+  @Autowired(required = false)
+  public void setBatchWriter(CommentBatchWriter batchWriter) {
+    this.batchWriter = batchWriter;
+  }
+
+  /**
+   * Sets the materialized leaderboard of commenters, kept up to date by the comment writes and
+   * used by {@link #mostActiveCommenters()} once ready.
+   *
+   * @param leaderboard - commenter leaderboard.
+   */
+  @Autowired(required = false)
+  public void setLeaderboard(CommenterLeaderboard leaderboard) {
+    this.leaderboard = leaderboard;
+  }
+
+  /**
+   * Creates the index behind {@link #getMovieComments(String, int)} if it is missing.
+   */
+  @PostConstruct
+  public void createIndexes() {
+    try {
+      commentCollection.createIndex(MOVIE_COMMENTS_INDEX);
+    } catch (MongoException e) {
+      log.warn("Could not create the `comments` movie_id/date index: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Returns the most recent comments of a movie, in the order MovieDao.getMovie embeds them.
+   *
+   * @param movieId - movie identifier string.
+   * @param limit - max number of returned comments.
+   * @return List of Comment objects, empty if movieId is not a valid id.
+   */
+  public List<Comment> getMovieComments(String movieId, int limit) {
+    List<Comment> comments = new ArrayList<>();
+    if (movieId == null || !ObjectId.isValid(movieId)) {
+      return comments;
+    }
+    commentCollection
+        .find(Filters.eq("movie_id", new ObjectId(movieId)))
+        .sort(Sorts.descending("date"))
+        .limit(limit)
+        .into(comments);
+    return comments;
   }
 
   /**
@@ -85,8 +267,26 @@ public class CommentDao extends AbstractMFlixDao {
 		if (comment.getId() == null || comment.getId().isEmpty()) {
 			throw new IncorrectDaoOperation("Comment objects need to have an id field set.");
 		}
+    if (batchWriter != null && batchWriter.isRunning()) {
+      try {
+        return batchWriter
+            .insert(comment)
+            .get(CommentBatchWriter.INSERT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+      } catch (ExecutionException e) {
+        log.error("An error ocurred while trying to insert a Comment.");
+        return null;
+      } catch (TimeoutException e) {
+        // the comment may still be written by its batch; the caller is told it was not
+        log.error("Timed out waiting for the batch of comment `{}`.", comment.getId());
+        return null;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return null;
+      }
+    }
 	    try {
 	        commentCollection.insertOne(comment);  
+	        countComment(comment, 1);
 	        return comment;
 	      } catch (MongoException e) {
 	        log.error("An error ocurred while trying to insert a Comment.");
@@ -98,7 +298,10 @@ public class CommentDao extends AbstractMFlixDao {
    * Updates the comment text matching commentId and user email. This method would be equivalent to
    * running the following mongo shell command:
    *
-   * <p>db.comments.update({_id: commentId}, {$set: { "text": text, date: ISODate() }})
+   * <p>db.comments.update({_id: commentId}, {$set: { "text": text, edited_at: ISODate() }})
+   *
+   * <p>The comment keeps its `date`, so that an edit does not move it among the comments of its
+   * movie.
    *
    * <p>
    *
@@ -108,21 +311,18 @@ public class CommentDao extends AbstractMFlixDao {
    * @return true if successfully updates the comment text.
    */
   public boolean updateComment(String commentId, String text, String email) {
-		log.error("Could not update comment `{}`. Make sure the comment is owned by `{}`",
-			commentId, email);
 	    try {
 	    	Bson filter = Filters.and(Filters.eq("_id", new ObjectId(commentId)), Filters.eq("email", email));
-	    	Bson updateObject = Updates.combine(Updates.set("text", text), Updates.set("date", new Date()));
-	    	UpdateResult result = commentCollection.updateOne(
+	    	Bson updateObject = Updates.combine(Updates.set("text", text), Updates.set("edited_at", new Date()));
+	    	Comment updated = commentCollection.findOneAndUpdate(
 				filter,
-				updateObject);
-			if (result.getMatchedCount() > 0) {
-				if (result.getModifiedCount() != 1) {
-					log.warn("Comment `{}` text was not updated. Is it the same text?");
-				}
-				return true;
+				updateObject,
+				new FindOneAndUpdateOptions().projection(Projections.include("movie_id")));
+			if (updated == null) {
+				return false;
 			}
-			return false;
+			commentsEdited(Collections.singleton(updated.getMovieObjectId()));
+			return true;
 	      } catch (MongoException e) {
 	        log.error("An error ocurred while trying to update a Comment.");
 	        return false;
@@ -130,6 +330,176 @@ public class CommentDao extends AbstractMFlixDao {
 //		return result.getMatchedCount() > 0 && result.getModifiedCount() > 0;
   }
 
+  /**
+   * Updates the comment text matching commentId if it is owned by `email`, and returns the comment
+   * as it was before the update. The ownership check runs on the server as part of the update, so
+   * that a missing comment and a comment of another user are told apart in a single round trip:
+   *
+   * <p>db.runCommand({findAndModify: "comments", query: {_id: commentId}, update: [{$set: {text:
+   * {$cond: [{$eq: ["$email", email]}, text, "$text"]}, edited_at: ...}}]})
+   *
+   * <p>Update pipelines need MongoDB 4.2, as the `$merge` of the commenter leaderboard does.
+   *
+   * @param commentId - comment id string value.
+   * @param text - comment text to be updated.
+   * @param email - user email.
+   * @param editedAt - time of the edit, as returned to the user.
+   * @return the comment before the update, or null if there is no such comment. It was updated
+   *     only if its email is `email`.
+   * @throws IncorrectDaoOperation if the update fails.
+   */
+  public Comment findAndUpdateComment(
+      String commentId, String text, String email, Date editedAt) {
+    Document command =
+        new Document("findAndModify", COMMENT_COLLECTION)
+            .append("query", new Document("_id", new ObjectId(commentId)))
+            .append("update", Collections.singletonList(ownedUpdate(email, text, editedAt)));
+    try {
+      Document previous = (Document) db.runCommand(command).get("value");
+      if (previous == null) {
+        return null;
+      }
+      Comment comment = decode(previous);
+      if (email.equals(comment.getEmail())) {
+        commentsEdited(Collections.singleton(comment.getMovieObjectId()));
+      }
+      return comment;
+    } catch (MongoException e) {
+      throw new IncorrectDaoOperation(
+          MessageFormat.format("Could not update comment `{0}`", commentId), e);
+    }
+  }
+
+  /**
+   * Builds the update pipeline stage that sets a new text and edit time on a comment only if it is
+   * owned by `email`. The text is a literal, so that a text starting with `$` is not read as a
+   * field path.
+   */
+  private static Document ownedUpdate(String email, String text, Date editedAt) {
+    Document owned = new Document("$eq", Arrays.asList("$email", email));
+    Document newText = new Document("$literal", text);
+    return new Document(
+        "$set",
+        new Document("text", new Document("$cond", Arrays.asList(owned, newText, "$text")))
+            .append(
+                "edited_at",
+                new Document("$cond", Arrays.asList(owned, editedAt, "$edited_at"))));
+  }
+
+  private Comment decode(Document document) {
+    return pojoCodecRegistry
+        .get(Comment.class)
+        .decode(
+            new BsonDocumentReader(document.toBsonDocument(Document.class, pojoCodecRegistry)),
+            DecoderContext.builder().build());
+  }
+
+  /**
+   * Moderation of comments: replaces the text of some comments and deletes others, regardless of
+   * their author, with a single unordered bulk write. The comments are read first, so that the
+   * comments versions of their movies can be incremented and the comment counts of the movies and
+   * authors of the deleted ones decremented; a comment deleted
+   * concurrently by its author is then counted twice, which {@link CommentCountReconciler} and the
+   * leaderboard rebuild repair.
+   *
+   * @param textUpdates - new text, by comment id string value.
+   * @param deleteIds - comment id string values to delete.
+   * @return result of the bulk write, or of the writes that succeeded if some of them failed.
+   */
+  public BulkWriteResult moderateComments(
+      Map<String, String> textUpdates, Collection<String> deleteIds) {
+    List<ObjectId> ids = toObjectIds(deleteIds);
+    ids.addAll(toObjectIds(textUpdates.keySet()));
+    List<Comment> moderated =
+        ids.isEmpty()
+            ? Collections.emptyList()
+            : commentCollection
+                .find(Filters.in("_id", ids))
+                .projection(Projections.include("movie_id", "email"))
+                .into(new ArrayList<>());
+    List<Comment> edited = new ArrayList<>();
+    List<Comment> deleted = new ArrayList<>();
+    splitModerated(moderated, deleteIds, edited, deleted);
+
+    List<WriteModel<Comment>> writes = new ArrayList<>(textUpdates.size() + deleted.size());
+    textUpdates.forEach(
+        (id, text) ->
+            writes.add(
+                new UpdateOneModel<>(
+                    Filters.eq("_id", new ObjectId(id)), Updates.set("text", text))));
+    for (Comment comment : deleted) {
+      writes.add(new DeleteOneModel<>(Filters.eq("_id", comment.getOid())));
+    }
+    if (writes.isEmpty()) {
+      return BulkWriteResult.acknowledged(0, 0, 0, 0, Collections.emptyList());
+    }
+    return moderate(commentCollection, writes, textUpdates.size(), edited, deleted);
+  }
+
+  /**
+   * Splits the comments read for a moderation into the ones to delete and the ones whose text is
+   * replaced.
+   */
+  protected static void splitModerated(
+      List<Comment> moderated,
+      Collection<String> deleteIds,
+      List<Comment> edited,
+      List<Comment> deleted) {
+    Set<String> toDelete = new HashSet<>(deleteIds);
+    for (Comment comment : moderated) {
+      if (toDelete.contains(comment.getOid().toHexString())) {
+        deleted.add(comment);
+      } else {
+        edited.add(comment);
+      }
+    }
+  }
+
+  /**
+   * Runs the unordered bulk write of a moderation, then increments the comments versions of the
+   * movies of the edited comments and decrements the comment counts of the comments whose delete
+   * succeeded.
+   *
+   * @param collection - collection the writes run on.
+   * @param writes - text updates followed by one delete per comment of `deleted`.
+   * @param updates - number of text updates at the head of `writes`.
+   * @param edited - comments whose text is replaced.
+   * @param deleted - comments to delete.
+   * @return result of the bulk write, or of the writes that succeeded if some of them failed.
+   */
+  protected <T> BulkWriteResult moderate(
+      MongoCollection<T> collection,
+      List<WriteModel<T>> writes,
+      int updates,
+      List<Comment> edited,
+      List<Comment> deleted) {
+    BulkWriteResult result;
+    List<Comment> counted = new ArrayList<>(deleted);
+    try {
+      result = collection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+    } catch (MongoBulkWriteException e) {
+      log.error("Comments moderation partially failed: {}", e.getMessage());
+      for (BulkWriteError error : e.getWriteErrors()) {
+        if (error.getIndex() >= updates) {
+          counted.set(error.getIndex() - updates, null);
+        }
+      }
+      counted.removeIf(Objects::isNull);
+      result = e.getWriteResult();
+    }
+    commentsEdited(movieIds(edited));
+    countComments(counted, -1);
+    return result;
+  }
+
+  private static List<ObjectId> toObjectIds(Collection<String> ids) {
+    List<ObjectId> objectIds = new ArrayList<>(ids.size());
+    for (String id : ids) {
+      objectIds.add(new ObjectId(id));
+    }
+    return objectIds;
+  }
+
   /**
    * Deletes comment that matches user email and commentId.
    *
@@ -142,16 +512,16 @@ public class CommentDao extends AbstractMFlixDao {
 	        throw new IllegalArgumentException("Commend id cannot be null");
 	      }
 		try {
-			DeleteResult result = commentCollection
-					.deleteOne(
+			Comment deleted = commentCollection
+					.findOneAndDelete(
 						Filters.and( 
 							Filters.eq("_id", new ObjectId(commentId)), 
 							Filters.eq("email", email)));
-			long count = result.getDeletedCount();
-			if (count != 1) {
+			if (deleted == null) {
 				log.error("Could not delete comment `{}` owned by `{}`", commentId, email);
 				return false;
 			} else {
+				countComment(deleted, -1);
 				return true;
 			}
 		} catch (MongoException e) {
@@ -168,6 +538,9 @@ public class CommentDao extends AbstractMFlixDao {
    * @return List {@link Critic} objects.
    */
   public List<Critic> mostActiveCommenters() {
+    if (leaderboard != null && leaderboard.isReady()) {
+      return leaderboard.getTopCommenters(20);
+    }
     List<Critic> mostActive = new ArrayList<>();
 		Bson count = Aggregates.sortByCount("$email");
 		Bson limit = Aggregates.limit(20);
@@ -0,0 +1,280 @@
+package mflix.api.daos;
+
+import static org.bson.codecs.configuration.CodecRegistries.fromProviders;
+import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.bson.Document;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.codecs.pojo.PojoCodecProvider;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Field;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+
+import mflix.api.models.Critic;
+import mflix.api.models.MovieCommentCount;
+
+/**
+ * Daily comment counts per user and movie, in the `comment_daily_rollups` collection, from which
+ * the windowed comment reports are served without reading the comments:
+ *
+ * <p>{_id: {day, email, movie_id}, day: ISODate, email, movie_id, count, rolled_at: ISODate}
+ *
+ * <p>Every `interval_minutes`, the days of the last `recompute_days` days are recomputed from the
+ * comments with an incremental `$merge`, using an index on the comment date. Edits keep the
+ * comment date, so days before that are settled, except for comments deleted since they were
+ * rolled up: every `full_rebuild_hours` all days are recomputed instead, which lowers or drops
+ * the rollups of deleted comments older than `recompute_days`.
+ */
+@Component
+public class CommentRollup extends AbstractMFlixDao {
+
+  public static final String ROLLUPS_COLLECTION = "comment_daily_rollups";
+
+  private static final String ROLLED_AT_FIELD = "rolled_at";
+
+  private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+
+  /** Time window of a comment report. */
+  public enum Window {
+    DAY(1),
+    WEEK(7),
+    MONTH(30);
+
+    private final int days;
+
+    Window(int days) {
+      this.days = days;
+    }
+
+    /**
+     * First day of the window: the last `days` full days and the current day are reported.
+     *
+     * @param now - current time.
+     * @return start of the first day of the window, UTC.
+     */
+    public Date since(long now) {
+      return startOfDay(now - days * DAY_MS);
+    }
+  }
+
+  private final MongoCollection<Document> rollupsCollection;
+
+  private final CodecRegistry pojoCodecRegistry;
+
+  private final CommentStorage commentStorage;
+
+  private final MongoCollection<Document> commentsCollection;
+
+  private final boolean enabled;
+
+  private final long intervalMinutes;
+
+  private final int recomputeDays;
+
+  private final long fullRebuildHours;
+
+  private final Logger log;
+
+  private long lastFullRebuild;
+
+  private ScheduledExecutorService scheduler;
+
+  @Autowired
+  public CommentRollup(
+      MongoClient mongoClient,
+      @Value("${spring.mongodb.database}") String databaseName,
+      @Value("${api.comments.rollup.enabled}") boolean enabled,
+      @Value("${api.comments.rollup.interval_minutes}") long intervalMinutes,
+      @Value("${api.comments.rollup.recompute_days}") int recomputeDays,
+      @Value("${api.comments.rollup.full_rebuild_hours}") long fullRebuildHours,
+      @Value("${api.comments.storage}") String commentStorage) {
+    super(mongoClient, databaseName);
+    log = LoggerFactory.getLogger(this.getClass());
+    this.rollupsCollection = db.getCollection(ROLLUPS_COLLECTION);
+    this.pojoCodecRegistry =
+        fromRegistries(
+            MongoClientSettings.getDefaultCodecRegistry(),
+            fromProviders(PojoCodecProvider.builder().automatic(true).build()));
+    this.commentStorage = CommentStorage.fromProperty(commentStorage);
+    this.commentsCollection = db.getCollection(this.commentStorage.getCollection());
+    this.enabled = enabled;
+    this.intervalMinutes = Math.max(1, intervalMinutes);
+    this.recomputeDays = Math.max(1, recomputeDays);
+    this.fullRebuildHours = fullRebuildHours;
+  }
+
+  private static Date startOfDay(long time) {
+    return new Date(time - Math.floorMod(time, DAY_MS));
+  }
+
+  @PostConstruct
+  public synchronized void start() {
+    if (!enabled || scheduler != null) {
+      return;
+    }
+    scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "comment-rollup");
+              thread.setDaemon(true);
+              return thread;
+            });
+    scheduler.scheduleWithFixedDelay(this::scheduledRun, 0, intervalMinutes, TimeUnit.MINUTES);
+  }
+
+  @PreDestroy
+  public synchronized void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+  }
+
+  private void scheduledRun() {
+    try {
+      long now = System.currentTimeMillis();
+      if (lastFullRebuild == 0 && rollupsCollection.countDocuments() > 0) {
+        // rolled up by a previous run of the application
+        lastFullRebuild = now;
+      }
+      if (lastFullRebuild == 0
+          || (fullRebuildHours > 0 && now - lastFullRebuild >= fullRebuildHours * 3600_000)) {
+        roll(null);
+        lastFullRebuild = now;
+      } else {
+        roll(startOfDay(now - (recomputeDays - 1) * DAY_MS));
+      }
+    } catch (RuntimeException e) {
+      log.error("Could not roll up the comments: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Recomputes the rollups of the days since a given day. Counts are merged into the rollups with
+   * a timestamp, and rollups of those days left with an older timestamp, whose comments are gone,
+   * are removed afterwards.
+   *
+   * @param since - start of the first recomputed day, or null to recompute all days.
+   */
+  public void roll(Date since) {
+    long start = System.currentTimeMillis();
+    Date rolledAt = new Date(start);
+    rollupsCollection.createIndex(Indexes.ascending("day"));
+    commentsCollection.createIndex(Indexes.ascending(commentStorage.path("date")));
+
+    List<Bson> pipeline;
+    if (since == null) {
+      pipeline = commentStorage.comments(new Document(), false);
+    } else {
+      pipeline = commentStorage.comments(Filters.gte(commentStorage.path("date"), since), false);
+      pipeline.add(Aggregates.match(Filters.gte("date", since)));
+    }
+    Document day =
+        new Document(
+            "$dateFromParts",
+            new Document("year", new Document("$year", "$date"))
+                .append("month", new Document("$month", "$date"))
+                .append("day", new Document("$dayOfMonth", "$date")));
+    pipeline.add(
+        Aggregates.group(
+            new Document("day", day).append("email", "$email").append("movie_id", "$movie_id"),
+            Accumulators.sum("count", 1)));
+    pipeline.add(
+        Aggregates.addFields(
+            new Field<>("day", "$_id.day"),
+            new Field<>("email", "$_id.email"),
+            new Field<>("movie_id", "$_id.movie_id"),
+            new Field<>(ROLLED_AT_FIELD, rolledAt)));
+    pipeline.add(
+        new Document(
+            "$merge",
+            new Document("into", ROLLUPS_COLLECTION)
+                .append("on", "_id")
+                .append("whenMatched", "replace")
+                .append("whenNotMatched", "insert")));
+    // toCollection() only knows about $out; running the pipeline is enough for $merge
+    commentsCollection.aggregate(pipeline).allowDiskUse(true).first();
+
+    Bson stale = Filters.lt(ROLLED_AT_FIELD, rolledAt);
+    rollupsCollection.deleteMany(
+        since == null ? stale : Filters.and(Filters.gte("day", since), stale));
+    log.info(
+        "Rolled up the comments since {} in {}ms",
+        since == null ? "the first day" : since,
+        System.currentTimeMillis() - start);
+  }
+
+  private List<Bson> windowTotals(Window window, String key, int page, int perPage) {
+    return new ArrayList<>(
+        Arrays.asList(
+            Aggregates.match(Filters.gte("day", window.since(System.currentTimeMillis()))),
+            Aggregates.group(key, Accumulators.sum("count", "$count")),
+            Aggregates.sort(Sorts.orderBy(Sorts.descending("count"), Sorts.ascending("_id"))),
+            // a long product, so that a large page cannot overflow into a negative $skip
+            Aggregates.skip((int) Math.min(Integer.MAX_VALUE, Math.max(0L, page) * perPage)),
+            Aggregates.limit(perPage)));
+  }
+
+  /**
+   * Users with the most comments in a time window.
+   *
+   * @param window - time window.
+   * @param page - page number, starting at 0.
+   * @param perPage - max number of users per page.
+   * @return List of Critic objects, by descending number of comments.
+   */
+  public List<Critic> getTopCommenters(Window window, int page, int perPage) {
+    return rollupsCollection
+        .withCodecRegistry(pojoCodecRegistry)
+        .aggregate(windowTotals(window, "$email", page, perPage), Critic.class)
+        .into(new ArrayList<>());
+  }
+
+  /**
+   * Movies with the most comments in a time window, with their title.
+   *
+   * @param window - time window.
+   * @param page - page number, starting at 0.
+   * @param perPage - max number of movies per page.
+   * @return List of MovieCommentCount objects, by descending number of comments.
+   */
+  public List<MovieCommentCount> getTopMovies(Window window, int page, int perPage) {
+    List<Bson> pipeline = windowTotals(window, "$movie_id", page, perPage);
+    pipeline.add(Aggregates.lookup(MovieDao.MOVIES_COLLECTION, "_id", "_id", "movie"));
+    pipeline.add(
+        Aggregates.project(
+            Projections.fields(
+                Projections.include("count"),
+                Projections.computed(
+                    "title", new Document("$arrayElemAt", Arrays.asList("$movie.title", 0))))));
+    return rollupsCollection
+        .withCodecRegistry(pojoCodecRegistry)
+        .aggregate(pipeline, MovieCommentCount.class)
+        .into(new ArrayList<>());
+  }
+}
@@ -0,0 +1,97 @@
+package mflix.api.daos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Sorts;
+
+/**
+ * Storage layout of the movie comments, set by the `api.comments.storage` property. Aggregations
+ * over the comments, such as the movie page lookup or the comment count rebuilds, get their source
+ * collection and stages from here.
+ */
+public enum CommentStorage {
+  /** One document per comment in the `comments` collection, read by {@link CommentDao}. */
+  FLAT(CommentDao.COMMENT_COLLECTION),
+  /** Buckets of comments per movie in `comment_buckets`, read by {@link BucketedCommentDao}. */
+  BUCKETED(BucketedCommentDao.BUCKETS_COLLECTION);
+
+  private final String collection;
+
+  CommentStorage(String collection) {
+    this.collection = collection;
+  }
+
+  /**
+   * Name of the collection holding the comments.
+   *
+   * @return collection name.
+   */
+  public String getCollection() {
+    return collection;
+  }
+
+  /**
+   * Path of a comment field in the stored documents, for filters applied before {@link
+   * #comments(Bson, boolean)} unwinds the comments.
+   *
+   * @param field - comment field name, such as `date`.
+   * @return field path.
+   */
+  public String path(String field) {
+    return this == FLAT ? field : "comments." + field;
+  }
+
+  /**
+   * Pipeline stages producing one document per comment, with its `movie_id`.
+   *
+   * @param movieFilter - filter on `movie_id`, applied before the comments are unwound.
+   * @param newestFirst - whether the comments must be sorted by descending date.
+   * @return list of stages.
+   */
+  public List<Bson> comments(Bson movieFilter, boolean newestFirst) {
+    List<Bson> stages = new ArrayList<>();
+    stages.add(Aggregates.match(movieFilter));
+    if (this == FLAT) {
+      if (newestFirst) {
+        stages.add(Aggregates.sort(Sorts.descending("date")));
+      }
+      return stages;
+    }
+    if (newestFirst) {
+      // buckets are numbered in order and hold their comments newest first
+      stages.add(Aggregates.sort(Sorts.descending("n")));
+    }
+    stages.add(Aggregates.unwind("$comments"));
+    stages.add(
+        Aggregates.replaceRoot(
+            new Document(
+                "$mergeObjects",
+                Arrays.asList("$comments", new Document("movie_id", "$movie_id")))));
+    return stages;
+  }
+
+  /**
+   * Layout named by a property value.
+   *
+   * @param value - `flat` or `bucketed`, case insensitive; null means flat.
+   * @return storage layout.
+   * @throws IncorrectDaoOperation if the value names no layout.
+   */
+  public static CommentStorage fromProperty(String value) {
+    if (value == null || value.isEmpty()) {
+      return FLAT;
+    }
+    for (CommentStorage storage : values()) {
+      if (storage.name().equalsIgnoreCase(value)) {
+        return storage;
+      }
+    }
+    throw new IncorrectDaoOperation("Unknown comment storage `" + value + "`");
+  }
+}
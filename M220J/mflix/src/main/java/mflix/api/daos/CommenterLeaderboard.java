@@ -0,0 +1,213 @@
+package mflix.api.daos;
+
+import static org.bson.codecs.configuration.CodecRegistries.fromProviders;
+import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.bson.Document;
+import org.bson.codecs.pojo.PojoCodecProvider;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Field;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+
+import mflix.api.models.Critic;
+
+/**
+ * Materialized count of comments per user email, in the `commenters` collection. Counts are
+ * incremented by the comment writes and fully rebuilt every `rebuild_minutes` with a `$group` on
+ * the `comments` collection merged into `commenters`, which repairs any drift.
+ *
+ * <p>Until the first rebuild of the process has completed, the leaderboard is not ready and the
+ * report falls back to aggregating the `comments` collection.
+ */
+@Component
+public class CommenterLeaderboard extends AbstractMFlixDao {
+
+  public static final String COMMENTERS_COLLECTION = "commenters";
+
+  /** Serves the top commenters, ties broken by email. */
+  static final Bson COUNT_INDEX =
+      Indexes.compoundIndex(Indexes.descending("count"), Indexes.ascending("_id"));
+
+  private static final String REBUILT_AT_FIELD = "rebuilt_at";
+
+  private final MongoCollection<Critic> commentersCollection;
+
+  private final CommentStorage commentStorage;
+
+  private final MongoCollection<Document> commentsCollection;
+
+  private final boolean enabled;
+
+  private final long rebuildMinutes;
+
+  private final Logger log;
+
+  private volatile boolean ready;
+
+  private ScheduledExecutorService scheduler;
+
+  @Autowired
+  public CommenterLeaderboard(
+      MongoClient mongoClient,
+      @Value("${spring.mongodb.database}") String databaseName,
+      @Value("${api.comments.leaderboard.enabled}") boolean enabled,
+      @Value("${api.comments.leaderboard.rebuild_minutes}") long rebuildMinutes,
+      @Value("${api.comments.storage}") String commentStorage) {
+    super(mongoClient, databaseName);
+    log = LoggerFactory.getLogger(this.getClass());
+    this.commentersCollection =
+        db.getCollection(COMMENTERS_COLLECTION, Critic.class)
+            .withCodecRegistry(
+                fromRegistries(
+                    MongoClientSettings.getDefaultCodecRegistry(),
+                    fromProviders(PojoCodecProvider.builder().automatic(true).build())));
+    this.commentStorage = CommentStorage.fromProperty(commentStorage);
+    this.commentsCollection = db.getCollection(this.commentStorage.getCollection());
+    this.enabled = enabled;
+    this.rebuildMinutes = rebuildMinutes;
+  }
+
+  @PostConstruct
+  public synchronized void start() {
+    if (!enabled || scheduler != null) {
+      return;
+    }
+    scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "commenter-leaderboard");
+              thread.setDaemon(true);
+              return thread;
+            });
+    if (rebuildMinutes > 0) {
+      scheduler.scheduleWithFixedDelay(
+          this::scheduledRebuild, 0, rebuildMinutes, TimeUnit.MINUTES);
+    } else {
+      scheduler.execute(this::scheduledRebuild);
+    }
+  }
+
+  @PreDestroy
+  public synchronized void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+  }
+
+  /**
+   * Tells if the top commenters can be read from the leaderboard.
+   *
+   * @return true once the leaderboard has been rebuilt.
+   */
+  public boolean isReady() {
+    return ready;
+  }
+
+  /**
+   * Users with the most comments, read from the `count` index.
+   *
+   * @param limit - max number of returned users.
+   * @return List of Critic objects, by descending number of comments.
+   */
+  public List<Critic> getTopCommenters(int limit) {
+    return commentersCollection
+        .find(Filters.gt("count", 0))
+        .sort(Sorts.orderBy(Sorts.descending("count"), Sorts.ascending("_id")))
+        .limit(limit)
+        .into(new ArrayList<>());
+  }
+
+  /**
+   * Applies comment count changes to the leaderboard with a single unordered bulk write. The
+   * comments are already written at this point, so a failure is only logged; the next rebuild
+   * repairs it.
+   *
+   * @param deltas - change of the number of comments, by user email.
+   */
+  public void increment(Map<String, Integer> deltas) {
+    if (!enabled || deltas.isEmpty()) {
+      return;
+    }
+    List<WriteModel<Critic>> updates = new ArrayList<>(deltas.size());
+    deltas.forEach(
+        (email, delta) ->
+            updates.add(
+                new UpdateOneModel<>(
+                    Filters.eq("_id", email),
+                    Updates.combine(
+                        Updates.inc("count", delta),
+                        Updates.setOnInsert(REBUILT_AT_FIELD, new Date())),
+                    new UpdateOptions().upsert(true))));
+    try {
+      commentersCollection.bulkWrite(updates, new BulkWriteOptions().ordered(false));
+    } catch (MongoException e) {
+      log.warn("Could not update the leaderboard of {} users: {}", deltas.size(), e.getMessage());
+    }
+  }
+
+  /**
+   * Recomputes the leaderboard from the `comments` collection. Counts are merged into the
+   * `commenters` collection with a rebuild timestamp, and users left with an older timestamp, who
+   * no longer have comments, are removed afterwards. Users first counted by {@link
+   * #increment(Map)} in the meantime get a newer timestamp and are kept.
+   */
+  public void rebuild() {
+    long start = System.currentTimeMillis();
+    Date rebuiltAt = new Date(start);
+    commentersCollection.createIndex(COUNT_INDEX);
+    List<Bson> pipeline = commentStorage.comments(new Document(), false);
+    pipeline.add(Aggregates.group("$email", Accumulators.sum("count", 1)));
+    pipeline.add(Aggregates.addFields(new Field<>(REBUILT_AT_FIELD, rebuiltAt)));
+    pipeline.add(
+        new Document(
+            "$merge",
+            new Document("into", COMMENTERS_COLLECTION)
+                .append("on", "_id")
+                .append("whenMatched", "replace")
+                .append("whenNotMatched", "insert")));
+    // toCollection() only knows about $out; running the pipeline is enough for $merge
+    commentsCollection.aggregate(pipeline).first();
+    commentersCollection.deleteMany(Filters.lt(REBUILT_AT_FIELD, rebuiltAt));
+    ready = true;
+    log.info("Rebuilt the commenter leaderboard in {}ms", System.currentTimeMillis() - start);
+  }
+
+  private void scheduledRebuild() {
+    try {
+      rebuild();
+    } catch (RuntimeException e) {
+      log.error("Could not rebuild the commenter leaderboard: {}", e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,316 @@
+package mflix.api.daos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+
+/**
+ * In-memory replica of the `movies` collection. When enabled, the collection is loaded with a
+ * parallel scan over `_id` partitions and kept up to date through the {@link MovieChangeWatcher}.
+ * It answers the cast, genre and country queries of {@link MovieDao} sorted by
+ * `tomatoes.viewer.numReviews`; text search is always left to the database.
+ *
+ * <p>Returned Document objects are shared with the mirror and must not be modified.
+ */
+@Component
+public class MovieCatalogMirror extends AbstractMFlixDao implements MovieChangeListener {
+
+  /** Top level fields that are not used by the mirrored queries nor by the movie mapper. */
+  private static final List<String> EXCLUDED_FIELDS =
+      Arrays.asList("awards", "languages", "released", "rated", "runtime", "metacritic");
+
+  /** Array fields whose values repeat across movies and are worth interning. */
+  private static final List<String> INTERNED_FIELDS =
+      Arrays.asList("cast", "genres", "countries", "directors", "writers");
+
+  private static final Comparator<Document> BY_NUM_REVIEWS =
+      Comparator.comparingInt(MovieDao::numReviews)
+          .reversed()
+          .thenComparing(d -> d.getObjectId("_id"));
+
+  private final MongoCollection<Document> moviesCollection;
+
+  private final MovieChangeWatcher watcher;
+
+  private final boolean enabled;
+
+  private final int loadPartitions;
+
+  private final Map<ObjectId, Document> movies = new ConcurrentHashMap<>();
+
+  private volatile List<Document> sortedMovies = Collections.emptyList();
+
+  /** Bumped every time `movies` changes. */
+  private final AtomicLong generation = new AtomicLong();
+
+  /** Generation of `movies` that `sortedMovies` was built from. */
+  private volatile long sortedGeneration = -1;
+
+  private volatile boolean ready;
+
+  private final Logger log;
+
+  @Autowired
+  public MovieCatalogMirror(
+      MongoClient mongoClient,
+      @Value("${spring.mongodb.database}") String databaseName,
+      MovieChangeWatcher watcher,
+      @Value("${api.movies.catalog_mirror.enabled}") boolean enabled,
+      @Value("${api.movies.catalog_mirror.load_partitions}") int loadPartitions) {
+    super(mongoClient, databaseName);
+    log = LoggerFactory.getLogger(this.getClass());
+    this.moviesCollection = db.getCollection(MovieDao.MOVIES_COLLECTION);
+    this.watcher = watcher;
+    this.enabled = enabled;
+    this.loadPartitions = Math.max(1, loadPartitions);
+  }
+
+  @PostConstruct
+  public void start() {
+    if (enabled) {
+      watcher.addListener(this);
+    }
+  }
+
+  /**
+   * Tells if the mirror is loaded and in sync with the change stream.
+   *
+   * @return true if queries can be answered from memory.
+   */
+  public boolean isReady() {
+    return ready && watcher.isWatching();
+  }
+
+  /**
+   * Reloads the mirror. If the load fails, the mirror stays not ready, and queries go to the
+   * database, until the {@link MovieChangeWatcher} retries the reset successfully.
+   */
+  @Override
+  public void onReset() {
+    ready = false;
+    try {
+      load();
+    } catch (RuntimeException e) {
+      log.warn("Catalog mirror is not ready, movie queries are served by the database");
+      throw e;
+    }
+    ready = true;
+  }
+
+  @Override
+  public void onChange(ChangeStreamDocument<Document> change) {
+    switch (change.getOperationType()) {
+      case INSERT:
+      case UPDATE:
+      case REPLACE:
+        Document movie = change.getFullDocument();
+        if (movie != null) {
+          movies.put(movie.getObjectId("_id"), compact(movie));
+        } else {
+          // the document was deleted before the update could be looked up
+          movies.remove(change.getDocumentKey().getObjectId("_id").getValue());
+        }
+        break;
+      case DELETE:
+        movies.remove(change.getDocumentKey().getObjectId("_id").getValue());
+        break;
+      default:
+        return;
+    }
+    generation.incrementAndGet();
+  }
+
+  /**
+   * Loads the whole collection, splitting the `_id` range into `loadPartitions` buckets that are
+   * scanned in parallel.
+   */
+  private void load() {
+    long start = System.currentTimeMillis();
+    List<Document> buckets =
+        moviesCollection
+            .aggregate(Collections.singletonList(Aggregates.bucketAuto("$_id", loadPartitions)))
+            .into(new ArrayList<>());
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, buckets.size()));
+    try {
+      List<Future<List<Document>>> partitions = new ArrayList<>();
+      for (int i = 0; i < buckets.size(); i++) {
+        Document bounds = (Document) buckets.get(i).get("_id");
+        // bucket upper bounds are exclusive, except for the last one
+        Bson upper =
+            i == buckets.size() - 1
+                ? Filters.lte("_id", bounds.get("max"))
+                : Filters.lt("_id", bounds.get("max"));
+        Bson filter = Filters.and(Filters.gte("_id", bounds.get("min")), upper);
+        partitions.add(executor.submit(() -> scan(filter)));
+      }
+
+      movies.clear();
+      for (Future<List<Document>> partition : partitions) {
+        for (Document movie : partition.get()) {
+          movies.put(movie.getObjectId("_id"), movie);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IncorrectDaoOperation("Interrupted while loading the movies mirror.", e);
+    } catch (ExecutionException e) {
+      throw new IncorrectDaoOperation("Could not load the movies mirror.", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    generation.incrementAndGet();
+    log.info(
+        "Loaded {} movies into the catalog mirror in {}ms",
+        movies.size(),
+        System.currentTimeMillis() - start);
+  }
+
+  private List<Document> scan(Bson filter) {
+    List<Document> partition = new ArrayList<>();
+    moviesCollection
+        .find(filter)
+        .projection(Projections.exclude(EXCLUDED_FIELDS))
+        .iterator()
+        .forEachRemaining(movie -> partition.add(compact(movie)));
+    return partition;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Document compact(Document movie) {
+    EXCLUDED_FIELDS.forEach(movie::remove);
+    for (String field : INTERNED_FIELDS) {
+      Object values = movie.get(field);
+      if (values instanceof List) {
+        movie.put(
+            field,
+            ((List<Object>) values)
+                .stream()
+                .map(v -> v instanceof String ? ((String) v).intern() : v)
+                .collect(Collectors.toList()));
+      }
+    }
+    return movie;
+  }
+
+  /**
+   * Snapshot of all movies sorted by `tomatoes.viewer.numReviews` descending. The snapshot is
+   * rebuilt lazily after changes have been applied, and only marked current once published, so
+   * that a change applied while it is built triggers another rebuild.
+   */
+  private List<Document> sortedMovies() {
+    if (sortedGeneration != generation.get()) {
+      synchronized (this) {
+        long current = generation.get();
+        if (sortedGeneration != current) {
+          List<Document> snapshot = new ArrayList<>(movies.values());
+          snapshot.sort(BY_NUM_REVIEWS);
+          sortedMovies = Collections.unmodifiableList(snapshot);
+          sortedGeneration = current;
+        }
+      }
+    }
+    return sortedMovies;
+  }
+
+  private List<Document> page(Predicate<Document> filter, int limit, int skip) {
+    return sortedMovies()
+        .stream()
+        .filter(filter)
+        .skip(skip)
+        .limit(limit)
+        .collect(Collectors.toList());
+  }
+
+  private long count(Predicate<Document> filter) {
+    return sortedMovies().stream().filter(filter).count();
+  }
+
+  /** Equivalent of the {@link Filters#in(String, Object[])} filter on an array field. */
+  private static Predicate<Document> anyOf(String field, String... values) {
+    List<String> wanted = Arrays.asList(values);
+    return movie -> {
+      Object actual = movie.get(field);
+      if (actual instanceof List) {
+        return ((List<?>) actual).stream().anyMatch(wanted::contains);
+      }
+      return wanted.contains(actual);
+    };
+  }
+
+  /** Equivalent of the {@link Filters#all(String, Object[])} filter on an array field. */
+  private static Predicate<Document> allOf(String field, String... values) {
+    List<String> wanted = Arrays.asList(values);
+    return movie -> {
+      Object actual = movie.get(field);
+      return actual instanceof List && ((List<?>) actual).containsAll(wanted);
+    };
+  }
+
+  public List<Document> getMovies(int limit, int skip) {
+    return page(movie -> true, limit, skip);
+  }
+
+  public List<Document> getMoviesByCast(int limit, int skip, String... cast) {
+    return page(anyOf("cast", cast), limit, skip);
+  }
+
+  public List<Document> getMoviesByGenre(int limit, int skip, String... genres) {
+    return page(anyOf("genres", genres), limit, skip);
+  }
+
+  /**
+   * Movies that match all the `countries`, projected to their `_id` and `title`.
+   *
+   * @param countries - countries to be matched.
+   * @return List of Document objects with `_id` and `title` fields.
+   */
+  public List<Document> getMoviesByCountry(String... countries) {
+    return sortedMovies()
+        .stream()
+        .filter(allOf("countries", countries))
+        .map(m -> new Document("_id", m.get("_id")).append("title", m.get("title")))
+        .collect(Collectors.toList());
+  }
+
+  public long getMoviesCount() {
+    return movies.size();
+  }
+
+  public long getCastSearchCount(String... cast) {
+    return count(anyOf("cast", cast));
+  }
+
+  public long getGenresSearchCount(String... genres) {
+    return count(anyOf("genres", genres));
+  }
+}
@@ -0,0 +1,27 @@
+package mflix.api.daos;
+
+import org.bson.Document;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+
+/**
+ * Callback interface for components that keep derived state of the `movies` collection and need
+ * to be notified by the {@link MovieChangeWatcher}.
+ */
+public interface MovieChangeListener {
+
+  /**
+   * Called for every change event reported on the `movies` collection.
+   *
+   * @param change - change stream event, with the full document looked up for updates.
+   */
+  void onChange(ChangeStreamDocument<Document> change);
+
+  /**
+   * Called once the change stream is open and no earlier events can be replayed: right after the
+   * listener registers, and whenever the stream had to be restarted without a resume token. Any
+   * derived state must be rebuilt from the collection. If it throws, it is called again after a
+   * growing delay until it succeeds.
+   */
+  void onReset();
+}
@@ -0,0 +1,259 @@
+package mflix.api.daos;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.MongoException;
+import com.mongodb.MongoServerException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+
+/**
+ * Watches the `movies` collection change stream and dispatches each event to the registered
+ * {@link MovieChangeListener} objects. The stream is only opened once the first listener
+ * registers, and it is resumed from the last seen resume token whenever the cursor fails.
+ */
+@Component
+public class MovieChangeWatcher extends AbstractMFlixDao {
+
+  /** Server error codes meaning that the resume token can no longer be used. */
+  private static final List<Integer> HISTORY_LOST_CODES = Arrays.asList(136, 280, 286);
+
+  /** Server error code returned when change streams are not supported by the deployment. */
+  private static final int CHANGE_STREAMS_UNSUPPORTED = 40573;
+
+  private static final long RETRY_DELAY_MS = 1000;
+
+  /** Delay before a listener whose reset failed is reset again, doubled on every failure. */
+  private static final long RESET_RETRY_MIN_MS = 1000;
+
+  private static final long RESET_RETRY_MAX_MS = TimeUnit.MINUTES.toMillis(5);
+
+  /** Failed resets of a listener, and time of its next attempt. */
+  private static final class FailedReset {
+
+    private int failures;
+
+    private long retryAt;
+  }
+
+  private final MongoCollection<Document> moviesCollection;
+
+  private final List<MovieChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+  private final Queue<MovieChangeListener> pendingResets = new ConcurrentLinkedQueue<>();
+
+  /** Listeners whose reset failed, only used by the watcher thread. */
+  private final Map<MovieChangeListener, FailedReset> failedResets = new HashMap<>();
+
+  private final AtomicLong version = new AtomicLong();
+
+  private final Logger log;
+
+  private volatile BsonDocument resumeToken;
+
+  private volatile boolean running;
+
+  private volatile boolean watching;
+
+  private Thread watcherThread;
+
+  @Autowired
+  public MovieChangeWatcher(
+      MongoClient mongoClient, @Value("${spring.mongodb.database}") String databaseName) {
+    super(mongoClient, databaseName);
+    log = LoggerFactory.getLogger(this.getClass());
+    moviesCollection = db.getCollection(MovieDao.MOVIES_COLLECTION);
+  }
+
+  /**
+   * Registers a listener. The listener gets a {@link MovieChangeListener#onReset()} call from the
+   * watcher thread as soon as the stream is open, and every change event after that.
+   *
+   * @param listener - listener to be notified.
+   */
+  public synchronized void addListener(MovieChangeListener listener) {
+    listeners.add(listener);
+    pendingResets.add(listener);
+    if (watcherThread == null) {
+      running = true;
+      watcherThread = new Thread(this::watch, "movies-change-watcher");
+      watcherThread.setDaemon(true);
+      watcherThread.start();
+    }
+  }
+
+  /**
+   * Tells whether the change stream is currently open, meaning that listeners are up to date
+   * with the collection.
+   *
+   * @return true if the stream is open.
+   */
+  public boolean isWatching() {
+    return watching;
+  }
+
+  /**
+   * Monotonic counter of the changes observed on the `movies` collection. It is also bumped every
+   * time the stream is restarted without a resume token, since changes may have been missed.
+   *
+   * <p>The version is bumped both before and after the listeners apply a change or a reset, so
+   * that a read spanning the change sees a different version, and a read observing the version a
+   * listener recorded may predate the change while any later version follows it.
+   *
+   * @return current catalog version.
+   */
+  public long getVersion() {
+    return version.get();
+  }
+
+  @PreDestroy
+  public synchronized void stop() {
+    running = false;
+    if (watcherThread != null) {
+      watcherThread.interrupt();
+      watcherThread = null;
+    }
+  }
+
+  private void watch() {
+    while (running) {
+      ChangeStreamIterable<Document> stream =
+          moviesCollection
+              .watch()
+              .fullDocument(FullDocument.UPDATE_LOOKUP)
+              .maxAwaitTime(1, TimeUnit.SECONDS);
+      if (resumeToken != null) {
+        stream = stream.resumeAfter(resumeToken);
+      } else {
+        // without a resume token there is no way to replay what happened before this point
+        version.incrementAndGet();
+        pendingResets.addAll(listeners);
+      }
+      try (MongoCursor<ChangeStreamDocument<Document>> cursor = stream.iterator()) {
+        watching = true;
+        while (running) {
+          resetPendingListeners();
+          ChangeStreamDocument<Document> change = cursor.tryNext();
+          if (change != null) {
+            dispatch(change);
+          }
+        }
+      } catch (MongoServerException e) {
+        if (e.getCode() == CHANGE_STREAMS_UNSUPPORTED) {
+          log.warn("Change streams are not supported by this deployment: {}", e.getMessage());
+          running = false;
+        } else if (HISTORY_LOST_CODES.contains(e.getCode())) {
+          log.warn("Cannot resume `movies` change stream: {}", e.getMessage());
+          resumeToken = null;
+        } else {
+          log.error("`movies` change stream failed: {}", e.getMessage());
+        }
+      } catch (MongoException e) {
+        log.error("`movies` change stream failed: {}", e.getMessage());
+      } finally {
+        watching = false;
+      }
+      pause();
+    }
+  }
+
+  /**
+   * Resets the listeners waiting for it, then bumps the catalog version. A listener whose reset
+   * fails is reset again after a delay, doubled on every failure up to {@link
+   * #RESET_RETRY_MAX_MS}, until a reset succeeds.
+   */
+  private void resetPendingListeners() {
+    long now = System.currentTimeMillis();
+    failedResets.forEach(
+        (listener, failed) -> {
+          if (failed.retryAt <= now && !pendingResets.contains(listener)) {
+            pendingResets.add(listener);
+          }
+        });
+    boolean reset = false;
+    MovieChangeListener listener;
+    while ((listener = pendingResets.poll()) != null) {
+      try {
+        listener.onReset();
+        reset = true;
+        FailedReset failed = failedResets.remove(listener);
+        if (failed != null) {
+          log.info("Listener `{}` reset after {} failed attempts", listener, failed.failures);
+        }
+      } catch (RuntimeException e) {
+        FailedReset failed = failedResets.computeIfAbsent(listener, l -> new FailedReset());
+        failed.failures++;
+        long delay =
+            Math.min(RESET_RETRY_MAX_MS, RESET_RETRY_MIN_MS << Math.min(failed.failures - 1, 20));
+        failed.retryAt = System.currentTimeMillis() + delay;
+        log.error(
+            "Listener `{}` failed to reset {} times, retrying in {}ms: {}",
+            listener,
+            failed.failures,
+            delay,
+            e.getMessage());
+      }
+    }
+    if (reset) {
+      // reads that observe this version started after the listeners were reset
+      version.incrementAndGet();
+    }
+  }
+
+  private void dispatch(ChangeStreamDocument<Document> change) {
+    version.incrementAndGet();
+    for (MovieChangeListener listener : listeners) {
+      try {
+        listener.onChange(change);
+      } catch (RuntimeException e) {
+        log.error("Listener `{}` failed to apply change: {}", listener, e.getMessage());
+      }
+    }
+    version.incrementAndGet();
+    OperationType operation = change.getOperationType();
+    if (operation == OperationType.INVALIDATE
+        || operation == OperationType.DROP
+        || operation == OperationType.RENAME
+        || operation == OperationType.DROP_DATABASE) {
+      // an invalidated stream cannot be resumed; start over and let the listeners rebuild
+      resumeToken = null;
+      throw new MongoException("`movies` change stream invalidated by " + operation.getValue());
+    }
+    resumeToken = change.getResumeToken();
+  }
+
+  private void pause() {
+    if (!running) {
+      return;
+    }
+    try {
+      Thread.sleep(RETRY_DELAY_MS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      running = false;
+    }
+  }
+}
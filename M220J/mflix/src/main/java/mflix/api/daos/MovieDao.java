@@ -16,25 +16,102 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.Aggregates;
 import com.mongodb.client.model.BsonField;
 import com.mongodb.client.model.BucketOptions;
+import com.mongodb.client.model.CountOptions;
 import com.mongodb.client.model.Facet;
 import com.mongodb.client.model.Field;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
 import com.mongodb.client.model.Projections;
 import com.mongodb.client.model.Sorts;
 import com.mongodb.client.model.Variable;
 
+import mflix.api.models.MovieSearchCriteria;
+
 @Component
 public class MovieDao extends AbstractMFlixDao {
 
   public static String MOVIES_COLLECTION = "movies";
 
+  public static final String DEFAULT_SORT_KEY = "tomatoes.viewer.numReviews";
+
+  /** Key pattern of the `genres_1_imdb.rating_1_metacritic_1` index. */
+  private static final Bson GENRES_INDEX = Indexes.ascending("genres", "imdb.rating", "metacritic");
+
+  /** Key pattern of the `getMovies` index, which serves the default sort. */
+  private static final Bson NUM_REVIEWS_INDEX = Indexes.descending(DEFAULT_SORT_KEY);
+
+  /** Key pattern of the `tomatoes_rating` index. */
+  private static final Bson VIEWER_RATING_INDEX = Indexes.descending("tomatoes.viewer.rating");
+
+  /**
+   * Sort orders that are served by an index, so that sorted queries never need a blocking
+   * in-memory sort. Each order is tied to the key pattern of the index that serves it.
+   */
+  public enum IndexedSort {
+    NUM_REVIEWS(NUM_REVIEWS_INDEX, Sorts.descending(DEFAULT_SORT_KEY)),
+    IMDB_RATING_ASC(GENRES_INDEX, Sorts.ascending("imdb.rating")),
+    IMDB_RATING_DESC(GENRES_INDEX, Sorts.descending("imdb.rating")),
+    VIEWER_RATING(VIEWER_RATING_INDEX, Sorts.descending("tomatoes.viewer.rating"));
+
+    private final Bson index;
+
+    private final Bson sort;
+
+    IndexedSort(Bson index, Bson sort) {
+      this.index = index;
+      this.sort = sort;
+    }
+
+    public Bson getIndex() {
+      return index;
+    }
+
+    public Bson getSort() {
+      return sort;
+    }
+
+    /**
+     * Tells if the index can serve this order for a search. Text searches are always sorted by
+     * text score, and the `imdb.rating` orders follow the `genres` prefix of their index, so they
+     * need a genres filter.
+     *
+     * @param criteria - search criteria.
+     * @return true if the search can be sorted without a blocking sort.
+     */
+    public boolean canServe(MovieSearchCriteria criteria) {
+      return !criteria.hasText() && (index != GENRES_INDEX || criteria.hasGenres());
+    }
+
+    /**
+     * Finds the sort order matching a request parameter value, like `imdb_rating_desc`.
+     *
+     * @param value - request parameter value.
+     * @return the matching IndexedSort or null if there is none.
+     */
+    public static IndexedSort fromParam(String value) {
+      for (IndexedSort sort : values()) {
+        if (sort.name().equalsIgnoreCase(value)) {
+          return sort;
+        }
+      }
+      return null;
+    }
+  }
+
   private MongoCollection<Document> moviesCollection;
 
+  private MovieCatalogMirror catalogMirror;
+
+  private MovieTopList topList;
+
+  private CommentStorage commentStorage = CommentStorage.FLAT;
+
   @Autowired
   public MovieDao(
       MongoClient mongoClient, @Value("${spring.mongodb.database}") String databaseName) {
@@ -42,15 +119,72 @@ public class MovieDao extends AbstractMFlixDao {
     moviesCollection = db.getCollection(MOVIES_COLLECTION);
   }
 
-	@SuppressWarnings("unchecked")
+  /**
+   * Sets the in-memory mirror of the movies collection. Queries it supports are answered from
+   * memory while the mirror is ready, and from the database otherwise.
+   *
+   * @param catalogMirror - movies catalog mirror.
+   */
+  @Autowired(required = false)
+  public void setCatalogMirror(MovieCatalogMirror catalogMirror) {
+    this.catalogMirror = catalogMirror;
+  }
+
+  /**
+   * Sets the list of top movies for the default sort, used to serve the first pages of
+   * {@link #getMovies(int, int)} without a database round trip.
+   *
+   * @param topList - top movies list.
+   */
+  @Autowired(required = false)
+  public void setTopList(MovieTopList topList) {
+    this.topList = topList;
+  }
+
+  /**
+   * Sets the storage layout of the comments embedded by {@link #getMovie(String)}.
+   *
+   * @param commentStorage - `api.comments.storage` value.
+   */
+  @Autowired
+  public void setCommentStorage(@Value("${api.comments.storage}") String commentStorage) {
+    this.commentStorage = CommentStorage.fromProperty(commentStorage);
+  }
+
+  /**
+   * Value of `tomatoes.viewer.numReviews` for a movie document, or -1 if the field is missing.
+   *
+   * @param movie - movie document.
+   * @return number of viewer reviews.
+   */
+  static int numReviews(Document movie) {
+    Object tomatoes = movie.get("tomatoes");
+    if (!(tomatoes instanceof Document)) {
+      return -1;
+    }
+    Object viewer = ((Document) tomatoes).get("viewer");
+    if (!(viewer instanceof Document)) {
+      return -1;
+    }
+    Object numReviews = ((Document) viewer).get("numReviews");
+    return numReviews instanceof Number ? ((Number) numReviews).intValue() : -1;
+  }
+
+  private boolean mirrorReady() {
+    return catalogMirror != null && catalogMirror.isReady();
+  }
+
+  private boolean mirrorReady(String sortKey) {
+    return DEFAULT_SORT_KEY.equals(sortKey) && mirrorReady();
+  }
+
 	private Bson buildLookupStage() {
-		String from = "comments";
+		String from = commentStorage.getCollection();
 		String as = "comments";
 		Variable<String> let = new Variable<String>("id", "$_id");
 		Document eq = Document.parse("{'$eq':['$movie_id','$$id']}");
-		Bson match = Aggregates.match(Filters.expr(eq));
-		Bson sort = Aggregates.sort(Sorts.descending("date"));
-		return Aggregates.lookup(from, Arrays.asList(let), Arrays.asList(match, sort), as);
+		List<Bson> pipeline = commentStorage.comments(Filters.expr(eq), true);
+		return Aggregates.lookup(from, Arrays.asList(let), pipeline, as);
 	}
 
   /**
@@ -95,11 +229,44 @@ public class MovieDao extends AbstractMFlixDao {
    * @param skip - number of documents to be skipped.
    * @return list of documents.
    */
-  @SuppressWarnings("UnnecessaryLocalVariable")
   public List<Document> getMovies(int limit, int skip) {
-    String defaultSortKey = "tomatoes.viewer.numReviews";
-    List<Document> movies =
-        new ArrayList<>(getMovies(limit, skip, Sorts.descending(defaultSortKey)));
+    return drain(findMovies(limit, skip));
+  }
+
+  /**
+   * Lazy variant of {@link #getMovies(int, int)}: the query only runs, one batch at a time, when
+   * the returned Iterable is iterated.
+   *
+   * @param limit - max number of returned documents.
+   * @param skip - number of documents to be skipped.
+   * @return Iterable of documents.
+   */
+  public Iterable<Document> findMovies(int limit, int skip) {
+    if (topList != null && topList.covers(limit, skip)) {
+      return topList.getMovies(limit, skip);
+    }
+    if (mirrorReady()) {
+      return catalogMirror.getMovies(limit, skip);
+    }
+    return moviesCollection
+        .find()
+        .limit(limit)
+        .skip(skip)
+        .sort(Sorts.descending(DEFAULT_SORT_KEY));
+  }
+
+  /**
+   * Collects the documents of an Iterable returned by the lazy `find` methods.
+   *
+   * @param documents - documents, possibly backed by a cursor.
+   * @return list of documents.
+   */
+  private static List<Document> drain(Iterable<Document> documents) {
+    if (documents instanceof List) {
+      return (List<Document>) documents;
+    }
+    List<Document> movies = new ArrayList<>();
+    documents.forEach(movies::add);
     return movies;
   }
 
@@ -134,6 +301,9 @@ public class MovieDao extends AbstractMFlixDao {
    */
 	public List<Document> getMoviesByCountry(
 		String... country) {
+		if (mirrorReady()) {
+			return catalogMirror.getMoviesByCountry(country);
+		}
 		List<Document> results = new ArrayList<>();
 		Bson queryFilter = Filters.all("countries", country);
 		moviesCollection.find(queryFilter).projection(fields(include("title"))) .into(results);
@@ -150,19 +320,27 @@ public class MovieDao extends AbstractMFlixDao {
    * @return List of query matching Document objects
    */
   public List<Document> getMoviesByText(int limit, int skip, String keywords) {
+    return drain(findMoviesByText(limit, skip, keywords));
+  }
+
+  /**
+   * Lazy variant of {@link #getMoviesByText(int, int, String)}.
+   *
+   * @param limit - integer value of number of documents to be limited to.
+   * @param skip - number of documents to be skipped.
+   * @param keywords - text matching keywords or terms
+   * @return Iterable of query matching Document objects
+   */
+  public Iterable<Document> findMoviesByText(int limit, int skip, String keywords) {
     Bson textFilter = Filters.text(keywords);
     Bson projection = Projections.metaTextScore("score");
     Bson sort = Sorts.metaTextScore("score");
-    List<Document> movies = new ArrayList<>();
-    moviesCollection
+    return moviesCollection
         .find(textFilter)
         .projection(projection)
         .sort(sort)
         .skip(skip)
-        .limit(limit)
-        .iterator()
-        .forEachRemaining(movies::add);
-    return movies;
+        .limit(limit);
   }
 
   /**
@@ -176,17 +354,26 @@ public class MovieDao extends AbstractMFlixDao {
    * @return List of documents sorted by sortKey that match the cast selector.
    */
   public List<Document> getMoviesByCast(String sortKey, int limit, int skip, String... cast) {
-		Bson castFilter = Filters.in("cast", cast);
-		Bson sort = Sorts.descending(sortKey);
-    List<Document> movies = new ArrayList<>();
-    moviesCollection
-        .find(castFilter)
-        .sort(sort)
-        .limit(limit)
-        .skip(skip)
-        .iterator()
-        .forEachRemaining(movies::add);
-    return movies;
+    return drain(findMoviesByCast(sortKey, limit, skip, cast));
+  }
+
+  /**
+   * Lazy variant of {@link #getMoviesByCast(String, int, int, String...)}.
+   *
+   * @param sortKey - sort key.
+   * @param limit - number of documents to be returned.
+   * @param skip - number of documents to be skipped.
+   * @param cast - cast selector.
+   * @return Iterable of documents sorted by sortKey that match the cast selector.
+   */
+  public Iterable<Document> findMoviesByCast(
+      String sortKey, int limit, int skip, String... cast) {
+    if (mirrorReady(sortKey)) {
+      return catalogMirror.getMoviesByCast(limit, skip, cast);
+    }
+    Bson castFilter = Filters.in("cast", cast);
+    Bson sort = Sorts.descending(sortKey);
+    return moviesCollection.find(castFilter).sort(sort).limit(limit).skip(skip);
   }
 
   /**
@@ -199,19 +386,223 @@ public class MovieDao extends AbstractMFlixDao {
    * @return List of matching Document objects.
    */
   public List<Document> getMoviesByGenre(String sortKey, int limit, int skip, String... genres) {
+    return drain(findMoviesByGenre(sortKey, limit, skip, genres));
+  }
+
+  /**
+   * Lazy variant of {@link #getMoviesByGenre(String, int, int, String...)}.
+   *
+   * @param sortKey - sorting key string.
+   * @param limit - number of documents to be returned.
+   * @param skip - number of documents to be skipped
+   * @param genres - genres matching string vargs.
+   * @return Iterable of matching Document objects.
+   */
+  public Iterable<Document> findMoviesByGenre(
+      String sortKey, int limit, int skip, String... genres) {
+    if (mirrorReady(sortKey)) {
+      return catalogMirror.getMoviesByGenre(limit, skip, genres);
+    }
     // query filter
-    Bson castFilter = Filters.in("genres", genres);
+    Bson genresFilter = Filters.in("genres", genres);
     // sort key
     Bson sort = Sorts.descending(sortKey);
-    List<Document> movies = new ArrayList<>();
-	   moviesCollection
-	   		.find(castFilter)
-			.sort(sort)
-			.limit(limit)
-			.skip(skip)
-			.iterator()
-			.forEachRemaining(movies::add);
-		return movies;
+    return moviesCollection.find(genresFilter).sort(sort).limit(limit).skip(skip);
+  }
+
+  /**
+   * Builds the compound filter of a search, combining every criteria that is set.
+   *
+   * @param criteria - search criteria.
+   * @return filter matching all the set criteria.
+   */
+  Bson buildSearchFilter(MovieSearchCriteria criteria) {
+    List<Bson> filters = new ArrayList<>();
+    if (criteria.hasText()) {
+      filters.add(Filters.text(criteria.getKeywords()));
+    }
+    if (criteria.hasCast()) {
+      filters.add(Filters.in("cast", criteria.getCast()));
+    }
+    if (criteria.hasGenres()) {
+      filters.add(Filters.in("genres", criteria.getGenres()));
+    }
+    if (filters.isEmpty()) {
+      return new Document();
+    }
+    return filters.size() == 1 ? filters.get(0) : Filters.and(filters);
+  }
+
+  /**
+   * Chooses the index for a search that is not a text search. The `genres` index narrows down a
+   * combined cast and genres search, leaving only a small intersection to sort. Otherwise the
+   * `getMovies` index returns the documents already sorted.
+   *
+   * @param criteria - search criteria, without text filter.
+   * @return key pattern of the index to hint.
+   */
+  Bson chooseSearchIndex(MovieSearchCriteria criteria) {
+    if (criteria.hasGenres() && criteria.hasCast()) {
+      return GENRES_INDEX;
+    }
+    return NUM_REVIEWS_INDEX;
+  }
+
+  /**
+   * Finds the movies that match all the criteria at once: `$text` keywords, cast members and
+   * genres. Text searches are sorted by text score and use the text index, all other searches are
+   * sorted by `tomatoes.viewer.numReviews` descending.
+   *
+   * @param criteria - search criteria.
+   * @param limit - number of documents to be returned.
+   * @param skip - number of documents to be skipped.
+   * @return List of matching Document objects.
+   */
+  public List<Document> searchMovies(MovieSearchCriteria criteria, int limit, int skip) {
+    return searchMovies(criteria, null, limit, skip);
+  }
+
+  /**
+   * Finds the movies that match all the criteria, sorted in the requested order. The query is
+   * hinted to the index that backs the order.
+   *
+   * @param criteria - search criteria.
+   * @param sort - index backed sort order, or null for the default order of the search.
+   * @param limit - number of documents to be returned.
+   * @param skip - number of documents to be skipped.
+   * @return List of matching Document objects.
+   */
+  public List<Document> searchMovies(
+      MovieSearchCriteria criteria, IndexedSort sort, int limit, int skip) {
+    return drain(findMoviesByCriteria(criteria, sort, limit, skip));
+  }
+
+  /**
+   * Lazy variant of {@link #searchMovies(MovieSearchCriteria, IndexedSort, int, int)}.
+   *
+   * @param criteria - search criteria.
+   * @param sort - index backed sort order, or null for the default order of the search.
+   * @param limit - number of documents to be returned.
+   * @param skip - number of documents to be skipped.
+   * @return Iterable of matching Document objects.
+   */
+  public Iterable<Document> findMoviesByCriteria(
+      MovieSearchCriteria criteria, IndexedSort sort, int limit, int skip) {
+    if (sort != null && !sort.canServe(criteria)) {
+      throw new IncorrectDaoOperation(
+          String.format("Sort %s cannot be used with the search criteria.", sort));
+    }
+    Bson filter = buildSearchFilter(criteria);
+    FindIterable<Document> cursor = moviesCollection.find(filter);
+    if (sort != null) {
+      cursor = cursor.sort(sort.getSort()).hint(sort.getIndex());
+    } else if (criteria.hasText()) {
+      cursor =
+          cursor
+              .projection(Projections.metaTextScore("score"))
+              .sort(Sorts.metaTextScore("score"));
+    } else {
+      cursor = cursor.sort(Sorts.descending(DEFAULT_SORT_KEY)).hint(chooseSearchIndex(criteria));
+    }
+    return cursor.skip(skip).limit(limit);
+  }
+
+  /**
+   * Counts the number of documents matching all the search criteria.
+   *
+   * @param criteria - search criteria.
+   * @return number of matching documents.
+   */
+  public long getSearchCount(MovieSearchCriteria criteria) {
+    Bson filter = buildSearchFilter(criteria);
+    if (criteria.hasText()) {
+      return this.moviesCollection.countDocuments(filter);
+    }
+    CountOptions options = new CountOptions();
+    if (criteria.hasGenres()) {
+      options.hint(GENRES_INDEX);
+    }
+    return this.moviesCollection.countDocuments(filter, options);
+  }
+
+  /**
+   * Builds the filter of a range search: genres equality, which is the prefix of the
+   * `genres_1_imdb.rating_1_metacritic_1` index, followed by the `imdb.rating` and `metacritic`
+   * ranges that bound the same index scan. The `year` range is applied on the fetched documents.
+   *
+   * @param criteria - search criteria, with at least one genre.
+   * @return range search filter.
+   */
+  Bson buildRangeFilter(MovieSearchCriteria criteria) {
+    if (!criteria.hasGenres()) {
+      throw new IncorrectDaoOperation("Range searches require at least one genre.");
+    }
+    List<Bson> filters = new ArrayList<>();
+    filters.add(Filters.in("genres", criteria.getGenres()));
+    if (criteria.getMinRating() != null) {
+      filters.add(Filters.gte("imdb.rating", criteria.getMinRating()));
+    }
+    if (criteria.getMaxRating() != null) {
+      filters.add(Filters.lte("imdb.rating", criteria.getMaxRating()));
+    }
+    if (criteria.getMinMetacritic() != null) {
+      filters.add(Filters.gte("metacritic", criteria.getMinMetacritic()));
+    }
+    if (criteria.getMaxMetacritic() != null) {
+      filters.add(Filters.lte("metacritic", criteria.getMaxMetacritic()));
+    }
+    if (criteria.getMinYear() != null) {
+      filters.add(Filters.gte("year", criteria.getMinYear()));
+    }
+    if (criteria.getMaxYear() != null) {
+      filters.add(Filters.lte("year", criteria.getMaxYear()));
+    }
+    return Filters.and(filters);
+  }
+
+  /**
+   * Finds the movies of the given genres within the `imdb.rating`, `metacritic` and `year` ranges.
+   * The query is hinted to the index that backs the requested sort order.
+   *
+   * @param criteria - search criteria, with at least one genre.
+   * @param sort - index backed sort order.
+   * @param limit - number of documents to be returned.
+   * @param skip - number of documents to be skipped.
+   * @return List of matching Document objects.
+   */
+  public List<Document> getMoviesByRange(
+      MovieSearchCriteria criteria, IndexedSort sort, int limit, int skip) {
+    return drain(findMoviesByRange(criteria, sort, limit, skip));
+  }
+
+  /**
+   * Lazy variant of {@link #getMoviesByRange(MovieSearchCriteria, IndexedSort, int, int)}.
+   *
+   * @param criteria - search criteria, with at least one genre.
+   * @param sort - index backed sort order.
+   * @param limit - number of documents to be returned.
+   * @param skip - number of documents to be skipped.
+   * @return Iterable of matching Document objects.
+   */
+  public Iterable<Document> findMoviesByRange(
+      MovieSearchCriteria criteria, IndexedSort sort, int limit, int skip) {
+    return moviesCollection
+        .find(buildRangeFilter(criteria))
+        .sort(sort.getSort())
+        .hint(sort.getIndex())
+        .skip(skip)
+        .limit(limit);
+  }
+
+  /**
+   * Counts the number of documents matching a range search.
+   *
+   * @param criteria - search criteria, with at least one genre.
+   * @return number of matching documents.
+   */
+  public long getRangeSearchCount(MovieSearchCriteria criteria) {
+    return this.moviesCollection.countDocuments(
+        buildRangeFilter(criteria), new CountOptions().hint(GENRES_INDEX));
   }
 
   private ArrayList<Integer> runtimeBoundaries() {
@@ -321,6 +712,12 @@ public class MovieDao extends AbstractMFlixDao {
    * @return number of documents in the movies collection.
    */
   public long getMoviesCount() {
+    if (topList != null && topList.covers(0, 0)) {
+      return topList.getMoviesCount();
+    }
+    if (mirrorReady()) {
+      return catalogMirror.getMoviesCount();
+    }
     return this.moviesCollection.countDocuments();
   }
 
@@ -341,6 +738,9 @@ public class MovieDao extends AbstractMFlixDao {
    * @return number of matching documents.
    */
   public long getCastSearchCount(String... cast) {
+    if (mirrorReady()) {
+      return catalogMirror.getCastSearchCount(cast);
+    }
     return this.moviesCollection.countDocuments(Filters.in("cast", cast));
   }
 
@@ -351,6 +751,9 @@ public class MovieDao extends AbstractMFlixDao {
    * @return number of matching documents.
    */
   public long getGenresSearchCount(String... genres) {
+    if (mirrorReady()) {
+      return catalogMirror.getGenresSearchCount(genres);
+    }
     return this.moviesCollection.countDocuments(Filters.in("genres", genres));
   }
 }
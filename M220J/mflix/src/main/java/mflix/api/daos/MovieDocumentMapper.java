@@ -9,7 +9,9 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.stream.StreamSupport;
 
+import com.mongodb.client.MongoIterable;
 import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,6 +29,23 @@ public class MovieDocumentMapper {
     return movie;
   }
 
+  /**
+   * Maps documents to Movie objects lazily, one document at a time as the result is iterated. A
+   * cursor backed MongoIterable stays backed by the cursor.
+   *
+   * @param documents - documents returned by one of the MovieDao `find` methods.
+   * @return Iterable of Movie objects.
+   */
+  public static Iterable<Movie> mapToMovies(Iterable<Document> documents) {
+    if (documents instanceof MongoIterable) {
+      return ((MongoIterable<Document>) documents).map(MovieDocumentMapper::mapToMovie);
+    }
+    return () ->
+        StreamSupport.stream(documents.spliterator(), false)
+            .map(MovieDocumentMapper::mapToMovie)
+            .iterator();
+  }
+
   public static Movie mapToMovie(Bson bson) {
 
     Movie movie = new Movie();
@@ -34,6 +53,7 @@ public class MovieDocumentMapper {
     try {
       movie.setId(document.getObjectId("_id").toHexString());
       movie.setTitle(MessageFormat.format("{0}", document.get("title")));
+      movie.setYear(parseYear(document.get("year")));
       movie.setCast((List<String>) document.get("cast"));
       movie.setPlog(document.getString("plot"));
       movie.setFullPlot(document.getString("fullplot"));
@@ -57,6 +77,11 @@ public class MovieDocumentMapper {
 
       movie.setPoster(document.getString("poster"));
 
+      Object numMflixComments = document.get(CommentDao.COMMENTS_COUNT_FIELD);
+      if (numMflixComments instanceof Number) {
+        movie.setNumMflixComments(((Number) numMflixComments).intValue());
+      }
+
       if (document.containsKey("comments")) {
         List<Comment> comments = new ArrayList<>();
         for (Document commentDoc : (List<Document>) document.get("comments")) {
@@ -78,6 +103,7 @@ public class MovieDocumentMapper {
     comment.setText(document.getString("text"));
     comment.setEmail(document.getString("email"));
     comment.setDate(document.getDate("date"));
+    comment.setEditedAt(document.getDate("edited_at"));
     comment.setMovieId(document.getObjectId("movie_id").toHexString());
     comment.setName(document.getString("name"));
     return comment;
@@ -146,6 +172,28 @@ public class MovieDocumentMapper {
     return ((Number) o).intValue();
   }
 
+  /**
+   * Parses the `year` field, which is numeric for most documents but a string with trailing
+   * characters for some, like `2012è`.
+   *
+   * @param year - field value.
+   * @return year or 0 if the value does not start with digits.
+   */
+  private static int parseYear(Object year) {
+    if (year instanceof Number) {
+      return ((Number) year).intValue();
+    }
+    if (year instanceof String) {
+      String value = (String) year;
+      int end = 0;
+      while (end < value.length() && Character.isDigit(value.charAt(end))) {
+        end++;
+      }
+      return end > 0 ? Integer.parseInt(value.substring(0, end)) : 0;
+    }
+    return 0;
+  }
+
   private static Double parseDouble(Object rating) {
     if (rating instanceof String) {
       if ("".equals(rating)) {
@@ -0,0 +1,262 @@
+package mflix.api.daos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.UpdateDescription;
+
+/**
+ * Top `pages * movies_per_page` movies for the default `tomatoes.viewer.numReviews` descending
+ * sort, which is what every visitor of the home page gets. Review counts are kept in a primitive
+ * array, in descending order, paired with the movie ids and documents.
+ *
+ * <p>The list is built with a single indexed query and patched from the {@link
+ * MovieChangeWatcher} events. When a change cannot be applied locally, such as a movie dropping
+ * out of the list, the list is rebuilt from the database.
+ */
+@Component
+public class MovieTopList extends AbstractMFlixDao implements MovieChangeListener {
+
+  private static final String REVIEWS_FIELD_PREFIX = "tomatoes";
+
+  /** Immutable content of the list. Every change swaps in a new instance. */
+  private static final class Snapshot {
+
+    private final int[] numReviews;
+    private final ObjectId[] ids;
+    private final Document[] movies;
+    private final long moviesCount;
+
+    private Snapshot(int[] numReviews, ObjectId[] ids, Document[] movies, long moviesCount) {
+      this.numReviews = numReviews;
+      this.ids = ids;
+      this.movies = movies;
+      this.moviesCount = moviesCount;
+    }
+
+    private int indexOf(ObjectId id) {
+      for (int i = 0; i < ids.length; i++) {
+        if (ids[i].equals(id)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+
+  private final MongoCollection<Document> moviesCollection;
+
+  private final MovieChangeWatcher watcher;
+
+  private final boolean enabled;
+
+  private final int capacity;
+
+  private volatile Snapshot snapshot;
+
+  @Autowired
+  public MovieTopList(
+      MongoClient mongoClient,
+      @Value("${spring.mongodb.database}") String databaseName,
+      MovieChangeWatcher watcher,
+      @Value("${api.movies.top_list.enabled}") boolean enabled,
+      @Value("${api.movies.top_list.pages}") int pages,
+      @Value("${api.movies.movies_per_page}") int moviesPerPage) {
+    super(mongoClient, databaseName);
+    this.moviesCollection = db.getCollection(MovieDao.MOVIES_COLLECTION);
+    this.watcher = watcher;
+    this.enabled = enabled;
+    this.capacity = pages * moviesPerPage;
+  }
+
+  @PostConstruct
+  public void start() {
+    if (enabled && capacity > 0) {
+      watcher.addListener(this);
+    }
+  }
+
+  /**
+   * Tells if a page can be served from the list.
+   *
+   * @param limit - number of documents in the page.
+   * @param skip - number of documents to be skipped.
+   * @return true if the list is in sync and covers the requested page.
+   */
+  public boolean covers(int limit, int skip) {
+    Snapshot current = snapshot;
+    return current != null
+        && watcher.isWatching()
+        && (skip + limit <= current.ids.length || current.ids.length == current.moviesCount);
+  }
+
+  /**
+   * Page of the movies sorted by `tomatoes.viewer.numReviews` descending. Callers should check
+   * {@link #covers(int, int)} first.
+   *
+   * @param limit - number of documents in the page.
+   * @param skip - number of documents to be skipped.
+   * @return list of documents, which must not be modified.
+   */
+  public List<Document> getMovies(int limit, int skip) {
+    Document[] movies = snapshot.movies;
+    int from = Math.min(skip, movies.length);
+    int to = Math.min(skip + limit, movies.length);
+    return new ArrayList<>(Arrays.asList(movies).subList(from, to));
+  }
+
+  /**
+   * Number of documents in the `movies` collection, maintained from the change events.
+   *
+   * @return movies count.
+   */
+  public long getMoviesCount() {
+    return snapshot.moviesCount;
+  }
+
+  @Override
+  public void onReset() {
+    rebuild();
+  }
+
+  private void rebuild() {
+    List<Document> movies = new ArrayList<>(capacity);
+    moviesCollection
+        .find()
+        .sort(Sorts.descending(MovieDao.DEFAULT_SORT_KEY))
+        .limit(capacity)
+        .iterator()
+        .forEachRemaining(movies::add);
+    int[] numReviews = new int[movies.size()];
+    ObjectId[] ids = new ObjectId[movies.size()];
+    for (int i = 0; i < movies.size(); i++) {
+      numReviews[i] = MovieDao.numReviews(movies.get(i));
+      ids[i] = movies.get(i).getObjectId("_id");
+    }
+    snapshot =
+        new Snapshot(
+            numReviews,
+            ids,
+            movies.toArray(new Document[0]),
+            moviesCollection.countDocuments());
+  }
+
+  @Override
+  public void onChange(ChangeStreamDocument<Document> change) {
+    Snapshot current = snapshot;
+    if (current == null) {
+      return;
+    }
+    ObjectId id = change.getDocumentKey().getObjectId("_id").getValue();
+    int index = current.indexOf(id);
+    switch (change.getOperationType()) {
+      case INSERT:
+        place(current, -1, change.getFullDocument(), current.moviesCount + 1);
+        break;
+      case DELETE:
+        if (index >= 0) {
+          rebuild();
+        } else {
+          long moviesCount = current.moviesCount - 1;
+          snapshot = new Snapshot(current.numReviews, current.ids, current.movies, moviesCount);
+        }
+        break;
+      case UPDATE:
+        if (index < 0 && !touchesReviews(change.getUpdateDescription())) {
+          break;
+        }
+        // fall through
+      case REPLACE:
+        if (change.getFullDocument() == null) {
+          // deleted before the update could be looked up; the delete event will follow
+          break;
+        }
+        place(current, index, change.getFullDocument(), current.moviesCount);
+        break;
+      default:
+        break;
+    }
+  }
+
+  private boolean touchesReviews(UpdateDescription update) {
+    if (update == null) {
+      return true;
+    }
+    BsonDocument updated = update.getUpdatedFields();
+    List<String> removed = update.getRemovedFields();
+    return (updated != null && updated.keySet().stream().anyMatch(this::isReviewsField))
+        || (removed != null && removed.stream().anyMatch(this::isReviewsField));
+  }
+
+  private boolean isReviewsField(String field) {
+    return field.equals(REVIEWS_FIELD_PREFIX) || field.startsWith(REVIEWS_FIELD_PREFIX + ".");
+  }
+
+  /**
+   * Moves `movie` to its sorted position, removing its previous entry at `index` if any.
+   *
+   * @param current - list being patched.
+   * @param index - current position of the movie, or -1 if not in the list.
+   * @param movie - new version of the movie document.
+   * @param moviesCount - collection count after the change.
+   */
+  private void place(Snapshot current, int index, Document movie, long moviesCount) {
+    int reviews = MovieDao.numReviews(movie);
+    int size = current.ids.length;
+    boolean full = size == capacity;
+    if (index < 0 && full && reviews <= current.numReviews[size - 1]) {
+      // does not make it to the list
+      snapshot = new Snapshot(current.numReviews, current.ids, current.movies, moviesCount);
+      return;
+    }
+    if (index >= 0 && full && size < moviesCount && reviews < current.numReviews[size - 1]) {
+      // dropped below the tail, only the database knows what replaces it
+      rebuild();
+      return;
+    }
+
+    int newSize = index < 0 && !full ? size + 1 : size;
+    int[] numReviews = new int[newSize];
+    ObjectId[] ids = new ObjectId[newSize];
+    Document[] movies = new Document[newSize];
+    int target = 0;
+    boolean placed = false;
+    for (int i = 0; i < size && target < newSize; i++) {
+      if (i == index) {
+        continue;
+      }
+      if (!placed && reviews > current.numReviews[i]) {
+        numReviews[target] = reviews;
+        ids[target] = movie.getObjectId("_id");
+        movies[target++] = movie;
+        placed = true;
+        if (target == newSize) {
+          break;
+        }
+      }
+      numReviews[target] = current.numReviews[i];
+      ids[target] = current.ids[i];
+      movies[target++] = current.movies[i];
+    }
+    if (!placed) {
+      numReviews[newSize - 1] = reviews;
+      ids[newSize - 1] = movie.getObjectId("_id");
+      movies[newSize - 1] = movie;
+    }
+    snapshot = new Snapshot(numReviews, ids, movies, moviesCount);
+  }
+}
@@ -0,0 +1,135 @@
+package mflix.api.daos;
+
+import static org.bson.codecs.configuration.CodecRegistries.fromProviders;
+import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import org.bson.codecs.pojo.PojoCodecProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+
+import mflix.api.models.Session;
+
+/**
+ * User sessions of the `sessions` collection, one per user.
+ *
+ * <p>A session is written with a single upsert and expires with the JWT it holds: its `expires_at`
+ * field is `ttl_ms` after the login, and a TTL index removes it from the collection once passed.
+ * Expired sessions are never returned, even before the TTL monitor removes them.
+ */
+@Component
+public class SessionStore extends AbstractMFlixDao {
+
+  public static final String SESSIONS_COLLECTION = "sessions";
+
+  /** Session lifetime of stores built outside of the application, as set by `jwtExpirationInMs`. */
+  public static final long DEFAULT_TTL_MS = TimeUnit.DAYS.toMillis(7);
+
+  private final MongoCollection<Session> sessionsCollection;
+
+  private final long ttlMs;
+
+  private final Logger log;
+
+  @Autowired
+  public SessionStore(
+      MongoClient mongoClient,
+      @Value("${spring.mongodb.database}") String databaseName,
+      @Value("${jwtExpirationInMs}") long ttlMs) {
+    super(mongoClient, databaseName);
+    log = LoggerFactory.getLogger(this.getClass());
+    this.sessionsCollection =
+        db.getCollection(SESSIONS_COLLECTION, Session.class)
+            .withCodecRegistry(
+                fromRegistries(
+                    MongoClientSettings.getDefaultCodecRegistry(),
+                    fromProviders(PojoCodecProvider.builder().automatic(true).build())));
+    this.ttlMs = ttlMs;
+  }
+
+  /**
+   * Creates the unique `user_id` index, which keeps concurrent upserts of a user from creating
+   * two sessions, and the TTL index on `expires_at`.
+   */
+  @PostConstruct
+  public void createIndexes() {
+    try {
+      sessionsCollection.createIndex(
+          Indexes.ascending("user_id"), new IndexOptions().unique(true));
+      sessionsCollection.createIndex(
+          Indexes.ascending("expires_at"), new IndexOptions().expireAfter(0L, TimeUnit.SECONDS));
+    } catch (MongoException e) {
+      log.warn("Could not create the `sessions` indexes: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Creates or replaces the session of a user, with a single upsert.
+   *
+   * @param userId - user string identifier.
+   * @param jwt - jwt string token.
+   * @return true if successful.
+   */
+  public boolean save(String userId, String jwt) {
+    Session session = new Session();
+    session.setUserId(userId);
+    session.setJwt(jwt);
+    session.setExpiresAt(new Date(System.currentTimeMillis() + ttlMs));
+    try {
+      sessionsCollection.updateOne(
+          Filters.eq("user_id", userId),
+          Updates.combine(
+              Updates.set("jwt", jwt), Updates.set("expires_at", session.getExpiresAt())),
+          new UpdateOptions().upsert(true));
+    } catch (MongoException e) {
+      log.error("An error ocurred while trying to insert/update a Session.");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the session of a user.
+   *
+   * @param userId - user string identifier.
+   * @return Session object, or null if the user has no session or it has expired.
+   */
+  public Session get(String userId) {
+    return live(sessionsCollection.find(Filters.eq("user_id", userId)).first());
+  }
+
+  /**
+   * Removes the sessions of a user.
+   *
+   * @param userId - user string identifier.
+   */
+  public void delete(String userId) {
+    sessionsCollection.deleteMany(Filters.eq("user_id", userId));
+  }
+
+  private static Session live(Session session) {
+    if (session == null
+        || (session.getExpiresAt() != null
+            && session.getExpiresAt().getTime() <= System.currentTimeMillis())) {
+      return null;
+    }
+    return session;
+  }
+}
@@ -5,7 +5,6 @@ import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
 
 import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 
 import org.bson.Document;
 import org.bson.codecs.configuration.CodecRegistry;
@@ -27,6 +26,7 @@ import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.Updates;
 import com.mongodb.client.result.UpdateResult;
 
+import mflix.api.cache.UserCache;
 import mflix.api.models.Session;
 import mflix.api.models.User;
 
@@ -34,7 +34,8 @@ import mflix.api.models.User;
 public class UserDao extends AbstractMFlixDao {
 
   private final MongoCollection<User> usersCollection;
-  private final MongoCollection<Session> sessionsCollection;
+  private SessionStore sessionStore;
+  private UserCache userCache;
   private final CodecRegistry codecRegistry;
   private final Logger log;
 
@@ -49,7 +50,34 @@ public class UserDao extends AbstractMFlixDao {
             fromProviders(PojoCodecProvider.builder().automatic(true).build()));
 
     usersCollection = db.getCollection("users", User.class).withCodecRegistry(codecRegistry);
-    sessionsCollection = db.getCollection("sessions", Session.class).withCodecRegistry(codecRegistry);
+    sessionStore = new SessionStore(mongoClient, databaseName, SessionStore.DEFAULT_TTL_MS);
+  }
+
+  /**
+   * Sets the store of the user sessions. Without one, sessions expire after the default token
+   * lifetime of {@link SessionStore#DEFAULT_TTL_MS}.
+   *
+   * @param sessionStore - sessions store.
+   */
+  @Autowired(required = false)
+  public void setSessionStore(SessionStore sessionStore) {
+    this.sessionStore = sessionStore;
+  }
+
+  /**
+   * Sets the cache of the users read by email. Without one, every lookup reads the database.
+   *
+   * @param userCache - users cache.
+   */
+  @Autowired(required = false)
+  public void setUserCache(UserCache userCache) {
+    this.userCache = userCache;
+  }
+
+  private void invalidateUser(String email) {
+    if (userCache != null) {
+      userCache.invalidate(email);
+    }
   }
 
   /**
@@ -63,6 +91,7 @@ public class UserDao extends AbstractMFlixDao {
 			usersCollection
 			.withWriteConcern(WriteConcern.MAJORITY)
 			.insertOne(user);
+			invalidateUser(user.getEmail());
 			return true;
 		} catch (MongoException e) {
 			log.error("An error ocurred while trying to insert a User.");
@@ -81,25 +110,9 @@ public class UserDao extends AbstractMFlixDao {
    * @param jwt - jwt string token
    * @return true if successful
    */
-   	public boolean createUserSession(
-   		final String userId,
-   		final String jwt) {
-   		try {
-   			final Session session = new Session();
-   			session.setUserId(userId);
-   			session.setJwt(jwt);
-   			if (Optional.ofNullable(sessionsCollection.find(Filters.eq("user_id", userId)).first())
-   					.isPresent()) {
-   				sessionsCollection.updateOne(Filters.eq("user_id", userId), Updates.set("jwt", jwt));
-   			} else {
-   				sessionsCollection.insertOne(session);
-   			}
-   			return true;
-		} catch (MongoException e) {
-			log.error("An error ocurred while trying to insert/update a Session.");
-			return false;
-		}
-   	}
+  public boolean createUserSession(final String userId, final String jwt) {
+    return sessionStore.save(userId, jwt);
+  }
 
   /**
    * Returns the User object matching the an email string value.
@@ -108,6 +121,10 @@ public class UserDao extends AbstractMFlixDao {
    * @return User object or null.
    */
   public User getUser(final String email) {
+    return userCache != null ? userCache.get(email, this::findUser) : findUser(email);
+  }
+
+  private User findUser(final String email) {
 		User user = new User();
 		user = usersCollection.find(Filters.eq("email", email)).first();
 		return user;
@@ -119,16 +136,14 @@ public class UserDao extends AbstractMFlixDao {
    * @param userId - user string identifier.
    * @return Session object or null.
    */
-	public Session getUserSession(
-		final String userId) {
-		return sessionsCollection.find(Filters.eq("user_id", userId)).first();
-	}
+  public Session getUserSession(final String userId) {
+    return sessionStore.get(userId);
+  }
 
-	public boolean deleteUserSessions(
-		final String userId) {
-		sessionsCollection.deleteMany(Filters.eq("user_id", userId));
-		return true;
-	}
+  public boolean deleteUserSessions(final String userId) {
+    sessionStore.delete(userId);
+    return true;
+  }
 
   /**
    * Removes the user document that match the provided email.
@@ -138,12 +153,14 @@ public class UserDao extends AbstractMFlixDao {
    */
   public boolean deleteUser(final String email) {
 		try {
-			sessionsCollection.deleteMany(Filters.eq("user_id", email));
+			sessionStore.delete(email);
 			usersCollection.deleteMany(Filters.eq("email", email));
 			return true;
 		} catch (MongoException e) {
 			log.error("An error ocurred while trying to delete a User.");
 			return false;
+		} finally {
+			invalidateUser(email);
 		}
   }
 
@@ -178,6 +195,8 @@ public class UserDao extends AbstractMFlixDao {
 	    } catch (MongoException e) {
 	        log.error("An error ocurred while trying to update User preferences.");
 	        return false;
+	      } finally {
+	        invalidateUser(email);
 	      }
   }
 }
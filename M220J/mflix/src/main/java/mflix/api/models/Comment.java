@@ -1,6 +1,7 @@
 package mflix.api.models;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.bson.codecs.pojo.annotations.BsonId;
 import org.bson.codecs.pojo.annotations.BsonIgnore;
@@ -21,6 +22,12 @@ public class Comment {
 
   private Date date;
 
+  /** Time of the latest text edit. Edits keep `date`, which orders the comments of a movie. */
+  @JsonProperty("edited_at")
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  @BsonProperty("edited_at")
+  private Date editedAt;
+
   private String email;
 
   private String name;
@@ -58,6 +65,14 @@ public class Comment {
     this.date = date;
   }
 
+  public Date getEditedAt() {
+    return editedAt;
+  }
+
+  public void setEditedAt(Date editedAt) {
+    this.editedAt = editedAt;
+  }
+
   public String getEmail() {
     return email;
   }
@@ -0,0 +1,54 @@
+package mflix.api.models;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Response body of the faceted search endpoint. It is written by a dedicated serializer, see
+ * {@link mflix.config.MoviesJsonModule}.
+ */
+public final class FacetedMoviesPage {
+
+  private final FacetedMoviesResult result;
+
+  private final int page;
+
+  private final int entriesPerPage;
+
+  private final Map<String, ?> filters;
+
+  private final long catalogVersion;
+
+  public FacetedMoviesPage(
+      FacetedMoviesResult result,
+      int page,
+      int entriesPerPage,
+      Map<String, ?> filters,
+      long catalogVersion) {
+    this.result = result;
+    this.page = page;
+    this.entriesPerPage = entriesPerPage;
+    this.filters = Collections.unmodifiableMap(filters);
+    this.catalogVersion = catalogVersion;
+  }
+
+  public FacetedMoviesResult getResult() {
+    return result;
+  }
+
+  public int getPage() {
+    return page;
+  }
+
+  public int getEntriesPerPage() {
+    return entriesPerPage;
+  }
+
+  public Map<String, ?> getFilters() {
+    return filters;
+  }
+
+  public long getCatalogVersion() {
+    return catalogVersion;
+  }
+}
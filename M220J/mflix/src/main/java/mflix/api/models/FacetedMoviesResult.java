@@ -0,0 +1,39 @@
+package mflix.api.models;
+
+import java.util.Collections;
+import java.util.List;
+
+/** Page of a faceted search, with the rating and runtime buckets of all matching movies. */
+public final class FacetedMoviesResult {
+
+  private final List<Movie> movies;
+
+  private final Object rating;
+
+  private final Object runtime;
+
+  private final long count;
+
+  public FacetedMoviesResult(List<Movie> movies, Object rating, Object runtime, long count) {
+    this.movies = Collections.unmodifiableList(movies);
+    this.rating = rating;
+    this.runtime = runtime;
+    this.count = count;
+  }
+
+  public List<Movie> getMovies() {
+    return movies;
+  }
+
+  public Object getRating() {
+    return rating;
+  }
+
+  public Object getRuntime() {
+    return runtime;
+  }
+
+  public long getCount() {
+    return count;
+  }
+}
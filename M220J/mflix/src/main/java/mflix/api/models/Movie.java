@@ -1,5 +1,7 @@
 package mflix.api.models;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import java.util.Date;
 import java.util.List;
 
@@ -23,6 +25,9 @@ public class Movie extends AbstractMovie {
 
   private List<Comment> comments;
 
+  @JsonProperty("num_mflix_comments")
+  private int numMflixComments;
+
   public Movie() {
     super();
   }
@@ -138,4 +143,12 @@ public class Movie extends AbstractMovie {
   public void setComments(List<Comment> comments) {
     this.comments = comments;
   }
+
+  public int getNumMflixComments() {
+    return numMflixComments;
+  }
+
+  public void setNumMflixComments(int numMflixComments) {
+    this.numMflixComments = numMflixComments;
+  }
 }
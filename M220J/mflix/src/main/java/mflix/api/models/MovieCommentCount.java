@@ -0,0 +1,50 @@
+package mflix.api.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.bson.codecs.pojo.annotations.BsonId;
+import org.bson.codecs.pojo.annotations.BsonIgnore;
+import org.bson.types.ObjectId;
+
+public class MovieCommentCount {
+
+  @BsonId @JsonIgnore private ObjectId movieObjectId;
+
+  private String title;
+
+  private int count;
+
+  public MovieCommentCount() {
+    super();
+  }
+
+  @JsonProperty("movie_id")
+  @BsonIgnore
+  public String getMovieId() {
+    return movieObjectId == null ? null : movieObjectId.toHexString();
+  }
+
+  public ObjectId getMovieObjectId() {
+    return movieObjectId;
+  }
+
+  public void setMovieObjectId(ObjectId movieObjectId) {
+    this.movieObjectId = movieObjectId;
+  }
+
+  public String getTitle() {
+    return title;
+  }
+
+  public void setTitle(String title) {
+    this.title = title;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  public void setCount(int count) {
+    this.count = count;
+  }
+}
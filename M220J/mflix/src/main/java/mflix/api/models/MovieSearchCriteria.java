@@ -0,0 +1,121 @@
+package mflix.api.models;
+
+import java.util.List;
+
+public class MovieSearchCriteria {
+
+  private List<String> text;
+
+  private List<String> cast;
+
+  private List<String> genres;
+
+  private Double minRating;
+
+  private Double maxRating;
+
+  private Integer minMetacritic;
+
+  private Integer maxMetacritic;
+
+  private Integer minYear;
+
+  private Integer maxYear;
+
+  public MovieSearchCriteria() {
+    super();
+  }
+
+  public List<String> getText() {
+    return text;
+  }
+
+  public void setText(List<String> text) {
+    this.text = text;
+  }
+
+  public List<String> getCast() {
+    return cast;
+  }
+
+  public void setCast(List<String> cast) {
+    this.cast = cast;
+  }
+
+  public List<String> getGenres() {
+    return genres;
+  }
+
+  public void setGenres(List<String> genres) {
+    this.genres = genres;
+  }
+
+  public Double getMinRating() {
+    return minRating;
+  }
+
+  public void setMinRating(Double minRating) {
+    this.minRating = minRating;
+  }
+
+  public Double getMaxRating() {
+    return maxRating;
+  }
+
+  public void setMaxRating(Double maxRating) {
+    this.maxRating = maxRating;
+  }
+
+  public Integer getMinMetacritic() {
+    return minMetacritic;
+  }
+
+  public void setMinMetacritic(Integer minMetacritic) {
+    this.minMetacritic = minMetacritic;
+  }
+
+  public Integer getMaxMetacritic() {
+    return maxMetacritic;
+  }
+
+  public void setMaxMetacritic(Integer maxMetacritic) {
+    this.maxMetacritic = maxMetacritic;
+  }
+
+  public Integer getMinYear() {
+    return minYear;
+  }
+
+  public void setMinYear(Integer minYear) {
+    this.minYear = minYear;
+  }
+
+  public Integer getMaxYear() {
+    return maxYear;
+  }
+
+  public void setMaxYear(Integer maxYear) {
+    this.maxYear = maxYear;
+  }
+
+  public boolean hasText() {
+    return text != null && !text.isEmpty();
+  }
+
+  public boolean hasCast() {
+    return cast != null && !cast.isEmpty();
+  }
+
+  public boolean hasGenres() {
+    return genres != null && !genres.isEmpty();
+  }
+
+  /**
+   * Joins the text filter values into the keywords string of a `$text` query.
+   *
+   * @return keywords string or null if there is no text filter.
+   */
+  public String getKeywords() {
+    return hasText() ? String.join(" ", text) : null;
+  }
+}
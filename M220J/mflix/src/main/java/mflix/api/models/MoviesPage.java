@@ -0,0 +1,77 @@
+package mflix.api.models;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Response body of the movie list and search endpoints. It is written by a dedicated serializer,
+ * see {@link mflix.config.MoviesJsonModule}.
+ */
+public final class MoviesPage {
+
+  private final String resultsKey;
+
+  private final Iterable<?> movies;
+
+  private final int page;
+
+  private final int entriesPerPage;
+
+  private final Long totalResults;
+
+  private final Map<String, ?> filters;
+
+  private final long catalogVersion;
+
+  /**
+   * @param resultsKey - name of the field that holds the movies, `movies` or `titles`.
+   * @param result - movies of the page and total count.
+   * @param page - page number.
+   * @param entriesPerPage - configured page size.
+   * @param filters - filters applied, echoed back to the client.
+   * @param catalogVersion - catalog version observed before the movies were read.
+   */
+  public MoviesPage(
+      String resultsKey,
+      MoviesResult<?> result,
+      int page,
+      int entriesPerPage,
+      Map<String, ?> filters,
+      long catalogVersion) {
+    this.resultsKey = resultsKey;
+    this.movies = result.getMovies();
+    this.totalResults = result.getCount();
+    this.page = page;
+    this.entriesPerPage = entriesPerPage;
+    this.filters = Collections.unmodifiableMap(filters);
+    this.catalogVersion = catalogVersion;
+  }
+
+  public String getResultsKey() {
+    return resultsKey;
+  }
+
+  public Iterable<?> getMovies() {
+    return movies;
+  }
+
+  public int getPage() {
+    return page;
+  }
+
+  public int getEntriesPerPage() {
+    return entriesPerPage;
+  }
+
+  public Long getTotalResults() {
+    return totalResults;
+  }
+
+  public Map<String, ?> getFilters() {
+    return filters;
+  }
+
+  public long getCatalogVersion() {
+    return catalogVersion;
+  }
+}
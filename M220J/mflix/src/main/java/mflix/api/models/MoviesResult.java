@@ -0,0 +1,33 @@
+package mflix.api.models;
+
+/**
+ * Page of movies returned by the movie services, with the total count of matching movies when it
+ * has been computed. The movies may be backed by an open query, in which case they are read from
+ * the database as the page is written to the response, and must be iterated only once.
+ *
+ * @param <T> - type of the listed movies.
+ */
+public final class MoviesResult<T> {
+
+  private final Iterable<T> movies;
+
+  private final Long count;
+
+  public MoviesResult(Iterable<T> movies, Long count) {
+    this.movies = movies;
+    this.count = count;
+  }
+
+  public Iterable<T> getMovies() {
+    return movies;
+  }
+
+  /**
+   * Total number of matching movies, only computed for the first page.
+   *
+   * @return count or null if not computed.
+   */
+  public Long getCount() {
+    return count;
+  }
+}
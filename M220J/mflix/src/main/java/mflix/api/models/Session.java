@@ -2,6 +2,8 @@ package mflix.api.models;
 
 import org.bson.codecs.pojo.annotations.BsonProperty;
 
+import java.util.Date;
+
 public class Session {
 
   @BsonProperty(value = "user_id")
@@ -9,6 +11,9 @@ public class Session {
 
   private String jwt;
 
+  @BsonProperty(value = "expires_at")
+  private Date expiresAt;
+
   public Session() {
     super();
   }
@@ -28,4 +33,12 @@ public class Session {
   public void setJwt(String jwt) {
     this.jwt = jwt;
   }
+
+  public Date getExpiresAt() {
+    return expiresAt;
+  }
+
+  public void setExpiresAt(Date expiresAt) {
+    this.expiresAt = expiresAt;
+  }
 }
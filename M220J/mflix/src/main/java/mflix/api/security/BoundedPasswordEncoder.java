@@ -0,0 +1,135 @@
+package mflix.api.security;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PasswordEncoder running the hashing of its delegate, typically bcrypt, on a dedicated pool of
+ * `threads` threads with a queue of at most `queueSize` pending hashes, so that a burst of logins
+ * or registrations uses at most `threads` cores and leaves the request threads serving reads.
+ *
+ * <p>The calling thread waits for its hash. Once the queue is full, hashes are rejected right away
+ * with {@link PasswordHashingRejected} instead of queueing behind work that would not complete
+ * before the client gives up.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+  private final PasswordEncoder delegate;
+
+  private final ThreadPoolExecutor executor;
+
+  private final AtomicLong hashes = new AtomicLong();
+
+  private final AtomicLong rejected = new AtomicLong();
+
+  private final AtomicLong hashNanos = new AtomicLong();
+
+  private final AtomicLong waitNanos = new AtomicLong();
+
+  /**
+   * Creates an encoder hashing on its own threads.
+   *
+   * @param delegate - encoder doing the hashing.
+   * @param threads - number of hashing threads, half the available processors if not positive.
+   * @param queueSize - max number of hashes waiting for a thread.
+   */
+  public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueSize) {
+    this.delegate = delegate;
+    int poolSize =
+        threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    AtomicInteger count = new AtomicInteger();
+    this.executor =
+        new ThreadPoolExecutor(
+            poolSize,
+            poolSize,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+            runnable -> {
+              Thread thread = new Thread(runnable, "password-hashing-" + count.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+  }
+
+  @Override
+  public String encode(CharSequence rawPassword) {
+    return hash(() -> delegate.encode(rawPassword));
+  }
+
+  @Override
+  public boolean matches(CharSequence rawPassword, String encodedPassword) {
+    return hash(() -> delegate.matches(rawPassword, encodedPassword));
+  }
+
+  private <T> T hash(Callable<T> task) {
+    long submittedAt = System.nanoTime();
+    Future<T> result;
+    try {
+      result =
+          executor.submit(
+              () -> {
+                long startedAt = System.nanoTime();
+                waitNanos.addAndGet(startedAt - submittedAt);
+                try {
+                  return task.call();
+                } finally {
+                  hashNanos.addAndGet(System.nanoTime() - startedAt);
+                  hashes.incrementAndGet();
+                }
+              });
+    } catch (RejectedExecutionException ex) {
+      rejected.incrementAndGet();
+      throw new PasswordHashingRejected("Too many password checks in progress, retry later.", ex);
+    }
+    try {
+      return result.get();
+    } catch (InterruptedException ex) {
+      result.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while hashing a password.", ex);
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ex.getCause();
+      }
+      throw new IllegalStateException("Unable to hash a password.", ex.getCause());
+    }
+  }
+
+  /**
+   * Hashing counters: number of `hashes` and of `rejected` hashes, current `queue_depth` and
+   * `active` threads, and mean time spent hashing and waiting for a thread, in microseconds.
+   *
+   * @return map of metric name to value.
+   */
+  public Map<String, Long> getMetrics() {
+    long count = hashes.get();
+    Map<String, Long> metrics = new HashMap<>();
+    metrics.put("hashes", count);
+    metrics.put("rejected", rejected.get());
+    metrics.put("queue_depth", (long) executor.getQueue().size());
+    metrics.put("active", (long) executor.getActiveCount());
+    metrics.put(
+        "hash_avg_micros", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(hashNanos.get() / count));
+    metrics.put(
+        "wait_avg_micros", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(waitNanos.get() / count));
+    return metrics;
+  }
+
+  /** Stops the hashing threads; pending hashes still complete. */
+  public void shutdown() {
+    executor.shutdown();
+  }
+}
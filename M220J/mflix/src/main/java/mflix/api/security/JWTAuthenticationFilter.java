@@ -3,6 +3,7 @@ package mflix.api.security;
 import mflix.api.services.TokenAuthenticationService;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import javax.servlet.FilterChain;
@@ -11,10 +12,17 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 
+/**
+ * Authenticates requests from the JWT of their `Authorization` header. Requests matching the
+ * public routes are not filtered: their token, if any, is only verified by the handlers that read
+ * the user email from it, so that anonymous catalog traffic pays no signature verification.
+ */
 public class JWTAuthenticationFilter extends OncePerRequestFilter {
 
   private TokenAuthenticationService authService;
 
+  private RequestMatcher publicRoutes;
+
   @Override
   protected void doFilterInternal(
       HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
@@ -25,7 +33,21 @@ public class JWTAuthenticationFilter extends OncePerRequestFilter {
     filterChain.doFilter(request, response);
   }
 
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return publicRoutes != null && publicRoutes.matches(request);
+  }
+
   public void setAuthService(TokenAuthenticationService authService) {
     this.authService = authService;
   }
+
+  /**
+   * Sets the routes that are permitted to anonymous requests.
+   *
+   * @param publicRoutes - matcher of the public routes.
+   */
+  public void setPublicRoutes(RequestMatcher publicRoutes) {
+    this.publicRoutes = publicRoutes;
+  }
 }
@@ -0,0 +1,18 @@
+package mflix.api.security;
+
+/**
+ * Runtime exception thrown when a password cannot be hashed because the password hashing
+ * executor is saturated. Answered with a 429 status, so that clients retry later.
+ */
+public class PasswordHashingRejected extends RuntimeException {
+
+  /**
+   * Creates an exception for a rejected password hashing.
+   *
+   * @param message - inflicting string message that originated the error.
+   * @param exception - exception chain reference.
+   */
+  public PasswordHashingRejected(final String message, Throwable exception) {
+    super(message, exception);
+  }
+}
@@ -0,0 +1,171 @@
+package mflix.api.services;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import mflix.api.daos.MovieChangeListener;
+import mflix.api.daos.MovieChangeWatcher;
+import mflix.api.models.Movie;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the validators used for HTTP conditional requests on movie resources, so that a request
+ * carrying a current `If-None-Match` can be answered before querying the database.
+ *
+ * <p>List pages are tagged with the catalog version of the {@link MovieChangeWatcher}. A movie
+ * page is tagged with the movie `lastupdated` value and the time of its latest change stream
+ * event. Every comment write, from any application instance, updates the comment count or the
+ * comments version on the movie document, so comment changes reach every instance through the
+ * change stream; writes done by this instance are also applied right away. Validators are only
+ * handed out while the change stream is open, since otherwise changes would go unnoticed.
+ */
+@Service
+@Configuration
+public class MovieVersionService implements MovieChangeListener {
+
+  /** Validators of a movie page, as sent in the `ETag` and `Last-Modified` headers. */
+  public static final class Validator {
+
+    private final String eTag;
+
+    private final long lastModified;
+
+    private Validator(String eTag, long lastModified) {
+      this.eTag = eTag;
+      this.lastModified = lastModified;
+    }
+
+    public String getETag() {
+      return eTag;
+    }
+
+    public long getLastModified() {
+      return lastModified;
+    }
+  }
+
+  private final MovieChangeWatcher watcher;
+
+  /** Distinguishes the tags issued by this instance from the ones issued before a restart. */
+  private final long bootTime = System.currentTimeMillis();
+
+  /** `lastupdated` time of the movies that have been served, by movie id. */
+  private final Map<String, Long> lastUpdated = new ConcurrentHashMap<>();
+
+  /** Time of the latest change event or comment change, by movie id. */
+  private final Map<String, Long> changed = new ConcurrentHashMap<>();
+
+  /** Time of the latest change stream reset, when any movie may have changed unnoticed. */
+  private volatile long resetTime = bootTime;
+
+  @Autowired
+  public MovieVersionService(MovieChangeWatcher watcher) {
+    this.watcher = watcher;
+  }
+
+  @PostConstruct
+  public void start() {
+    watcher.addListener(this);
+  }
+
+  /**
+   * Catalog version to be observed before the database is queried, and handed back to {@link
+   * #recordMovie(String, Movie, long)}.
+   *
+   * @return current catalog version.
+   */
+  public long getCatalogVersion() {
+    return watcher.getVersion();
+  }
+
+  /**
+   * Entity tag of the list and search pages, which only change with the catalog.
+   *
+   * @return weak entity tag or null if the catalog version is not being tracked.
+   */
+  public String getCatalogETag() {
+    if (!watcher.isWatching()) {
+      return null;
+    }
+    return String.format("W/\"%x-%x\"", bootTime, watcher.getVersion());
+  }
+
+  /**
+   * Validator of a movie page that has already been served.
+   *
+   * @param movieId - movie identifier.
+   * @return Validator or null if the movie version is not known.
+   */
+  public Validator getMovieValidator(String movieId) {
+    Long updated = lastUpdated.get(movieId);
+    if (updated == null || !watcher.isWatching()) {
+      return null;
+    }
+    return validator(movieId, updated);
+  }
+
+  /**
+   * Remembers the version of a movie that has just been read from the database.
+   *
+   * @param movieId - movie identifier.
+   * @param movie - movie read from the database.
+   * @param catalogVersion - catalog version observed before reading the movie.
+   * @return Validator of the movie page.
+   */
+  public Validator recordMovie(String movieId, Movie movie, long catalogVersion) {
+    long updated = movie.getLastUpdated() != null ? movie.getLastUpdated().getTime() : 0;
+    lastUpdated.put(movieId, updated);
+    if (watcher.getVersion() != catalogVersion) {
+      // the catalog changed while the movie was read, the recorded version may be stale
+      lastUpdated.remove(movieId);
+    }
+    return validator(movieId, updated);
+  }
+
+  /**
+   * Marks the comments of a movie as changed by this instance, which invalidates the tag of its
+   * page without waiting for the change stream event of the write.
+   *
+   * @param movieId - movie identifier.
+   */
+  public void commentsChanged(String movieId) {
+    if (movieId != null) {
+      markChanged(movieId);
+    }
+  }
+
+  private void markChanged(String movieId) {
+    // keep the change time increasing, so two changes within a millisecond get distinct tags
+    changed.merge(
+        movieId, System.currentTimeMillis(), (previous, now) -> Math.max(previous + 1, now));
+  }
+
+  private Validator validator(String movieId, long updated) {
+    long changedTime = Math.max(changed.getOrDefault(movieId, resetTime), resetTime);
+    return new Validator(
+        String.format("W/\"%x-%x\"", updated, changedTime), Math.max(updated, changedTime));
+  }
+
+  @Override
+  public void onChange(ChangeStreamDocument<Document> change) {
+    if (change.getDocumentKey() == null) {
+      onReset();
+      return;
+    }
+    String movieId = change.getDocumentKey().getObjectId("_id").getValue().toHexString();
+    // not every update touches `lastupdated`, so the change time is part of the tag
+    markChanged(movieId);
+    lastUpdated.remove(movieId);
+  }
+
+  @Override
+  public void onReset() {
+    resetTime = System.currentTimeMillis();
+    lastUpdated.clear();
+  }
+}
@@ -1,16 +1,25 @@
 package mflix.api.services;
 
+import mflix.api.cache.UserCache;
 import mflix.api.daos.CommentDao;
+import mflix.api.daos.CommentRollup;
+import mflix.api.daos.IncorrectDaoOperation;
 import mflix.api.daos.MovieDao;
 import mflix.api.daos.MovieDocumentMapper;
 import mflix.api.daos.UserDao;
 import mflix.api.models.Comment;
 import mflix.api.models.Critic;
+import mflix.api.models.FacetedMoviesResult;
 import mflix.api.models.Movie;
+import mflix.api.models.MovieSearchCriteria;
+import mflix.api.models.MovieTitle;
+import mflix.api.models.MoviesResult;
 import mflix.api.models.User;
+import mflix.api.security.BoundedPasswordEncoder;
 import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.stereotype.Service;
 
@@ -25,11 +34,32 @@ public class MoviesService {
   @Autowired private MovieDao movieDao;
   @Autowired private CommentDao commentDao;
   @Autowired private UserDao userDao;
+  @Autowired private MovieVersionService movieVersionService;
+  @Autowired private CommentRollup commentRollup;
+  @Autowired private UserCache userCache;
+
+  private BoundedPasswordEncoder passwordEncoder;
+
+  @Value("${api.comments.light_response.enabled}")
+  private boolean lightCommentResponse;
+
+  @Value("${api.comments.light_response.comments}")
+  private int responseComments;
 
   public MoviesService() {
     super();
   }
 
+  /**
+   * Sets the password encoder whose hashing metrics are reported with the configuration.
+   *
+   * @param passwordEncoder - bounded password encoder.
+   */
+  @Autowired(required = false)
+  public void setPasswordEncoder(BoundedPasswordEncoder passwordEncoder) {
+    this.passwordEncoder = passwordEncoder;
+  }
+
   /**
    * Finds the Movie object that matches the `id` value.
    *
@@ -63,44 +93,30 @@ public class MoviesService {
    *
    * @param resultsPerPage - number of results per page
    * @param page - result set page
-   * @return Map with list of results under `movies_list` key and total count under `movies_count`
-   *     key.
+   * @return MoviesResult with the page of movies and, for the first page, the total count.
    */
-  public Map<String, ?> getMovies(int resultsPerPage, int page) {
+  public MoviesResult<Movie> getMovies(int resultsPerPage, int page) {
     int skip = resultsPerPage * page;
 
-    List<Movie> movies =
-        movieDao
-            .getMovies(resultsPerPage, skip)
-            .stream()
-            .map(MovieDocumentMapper::mapToMovie)
-            .collect(Collectors.toList());
-    Map<String, Object> result = new HashMap<>();
-    result.put("movies_list", movies);
-    if (page == 0) {
-      result.put("movies_count", movieDao.getMoviesCount());
-    }
-    return result;
+    Iterable<Movie> movies =
+        MovieDocumentMapper.mapToMovies(movieDao.findMovies(resultsPerPage, skip));
+    return new MoviesResult<>(movies, page == 0 ? movieDao.getMoviesCount() : null);
   }
 
   /**
    * Finds all countries that have been recorded
    *
    * @param countries - array of countries required to match
-   * @return Map containing messages and movies objects that match the countries array
+   * @return MoviesResult containing the titles of the movies that match the countries array
    */
-  public Map<String, ?> getMoviesByCountry(String... countries) {
-
-    Map<String, Object> results = new HashMap<>();
-    results.put(
-        "movies_list",
+  public MoviesResult<MovieTitle> getMoviesByCountry(String... countries) {
+    return new MoviesResult<>(
         movieDao
             .getMoviesByCountry(countries)
             .stream()
             .map(MovieDocumentMapper::mapToMovieTitle)
-            .collect(Collectors.toList()));
-
-    return results;
+            .collect(Collectors.toList()),
+        null);
   }
 
   /**
@@ -109,25 +125,16 @@ public class MoviesService {
    * @param resultsPerPage - max number of results per page
    * @param page - wanted page number
    * @param filter - List of keywords to be matched
-   * @return Map containing the movies array and total results matching filter criteria.
+   * @return MoviesResult containing the movies and total results matching filter criteria.
    */
-  public Map<String, ?> getMoviesByText(int resultsPerPage, int page, ArrayList<String> filter) {
+  public MoviesResult<Movie> getMoviesByText(
+      int resultsPerPage, int page, ArrayList<String> filter) {
     int skip = resultsPerPage * page;
     String keywords = String.join(" ", filter);
 
-    List<Movie> movieList =
-        movieDao
-            .getMoviesByText(resultsPerPage, skip, keywords)
-            .stream()
-            .map(MovieDocumentMapper::mapToMovie)
-            .collect(Collectors.toList());
-    Map<String, Object> result = new HashMap<>();
-    result.put("movies_list", movieList);
-
-    if (page == 0) {
-      result.put("movies_count", movieDao.getTextSearchCount(keywords));
-    }
-    return result;
+    Iterable<Movie> movies =
+        MovieDocumentMapper.mapToMovies(movieDao.findMoviesByText(resultsPerPage, skip, keywords));
+    return new MoviesResult<>(movies, page == 0 ? movieDao.getTextSearchCount(keywords) : null);
   }
 
   /**
@@ -136,28 +143,18 @@ public class MoviesService {
    * @param resultsPerPage - max number of movies per page
    * @param page - wanted page number
    * @param castFilter - cast to be matched
-   * @return Map containing the movies array and total results matching filter criteria.
+   * @return MoviesResult containing the movies and total results matching filter criteria.
    */
-  public Map<String, ?> getMoviesByCast(
+  public MoviesResult<Movie> getMoviesByCast(
       int resultsPerPage, int page, ArrayList<String> castFilter) {
     int skip = page * resultsPerPage;
 
     String[] cast = castFilter.toArray(new String[0]);
     String sortKey = "tomatoes.viewer.numReviews";
-    List<Movie> movieList =
-        movieDao
-            .getMoviesByCast(sortKey, resultsPerPage, skip, cast)
-            .stream()
-            .map(MovieDocumentMapper::mapToMovie)
-            .collect(Collectors.toList());
-
-    Map<String, Object> result = new HashMap<>();
-    result.put("movies_list", movieList);
-
-    if (page == 0) {
-      result.put("movies_count", movieDao.getCastSearchCount(cast));
-    }
-    return result;
+    Iterable<Movie> movies =
+        MovieDocumentMapper.mapToMovies(
+            movieDao.findMoviesByCast(sortKey, resultsPerPage, skip, cast));
+    return new MoviesResult<>(movies, page == 0 ? movieDao.getCastSearchCount(cast) : null);
   }
 
   /**
@@ -166,28 +163,70 @@ public class MoviesService {
    * @param resultsPerPage - number of results per page.
    * @param page - page identifier.
    * @param genreFilters - genres filter.
-   * @return Map containing the movies array and total results matching filter criteria.
+   * @return MoviesResult containing the movies and total results matching filter criteria.
    */
-  public Map<String, ?> getMoviesByGenre(
+  public MoviesResult<Movie> getMoviesByGenre(
       int resultsPerPage, int page, ArrayList<String> genreFilters) {
     int skip = page * resultsPerPage;
 
     String[] genres = genreFilters.toArray(new String[0]);
     String sortKey = "tomatoes.viewer.numReviews";
-    List<Movie> movieList =
-        movieDao
-            .getMoviesByGenre(sortKey, resultsPerPage, skip, genres)
-            .stream()
-            .map(MovieDocumentMapper::mapToMovie)
-            .collect(Collectors.toList());
+    Iterable<Movie> movies =
+        MovieDocumentMapper.mapToMovies(
+            movieDao.findMoviesByGenre(sortKey, resultsPerPage, skip, genres));
+    return new MoviesResult<>(movies, page == 0 ? movieDao.getCastSearchCount(genres) : null);
+  }
+
+  /**
+   * Finds all movies that match every provided search filter at once. The intersection of the
+   * text, cast and genre filters is computed by the database in a single query.
+   *
+   * @param resultsPerPage - number of results per page.
+   * @param page - page identifier.
+   * @param criteria - text, cast and genre filters.
+   * @return MoviesResult containing the movies and total results matching filter criteria.
+   */
+  public MoviesResult<Movie> searchMovies(
+      int resultsPerPage, int page, MovieSearchCriteria criteria) {
+    return searchMovies(resultsPerPage, page, criteria, null);
+  }
 
-    Map<String, Object> result = new HashMap<>();
-    result.put("movies_list", movieList);
+  /**
+   * Finds all movies that match every provided search filter, in an index backed sort order.
+   *
+   * @param resultsPerPage - number of results per page.
+   * @param page - page identifier.
+   * @param criteria - text, cast and genre filters.
+   * @param sort - index backed sort order, or null for the default order of the search.
+   * @return MoviesResult containing the movies and total results matching filter criteria.
+   */
+  public MoviesResult<Movie> searchMovies(
+      int resultsPerPage, int page, MovieSearchCriteria criteria, MovieDao.IndexedSort sort) {
+    int skip = page * resultsPerPage;
 
-    if (page == 0) {
-      result.put("movies_count", movieDao.getCastSearchCount(genres));
-    }
-    return result;
+    Iterable<Movie> movies =
+        MovieDocumentMapper.mapToMovies(
+            movieDao.findMoviesByCriteria(criteria, sort, resultsPerPage, skip));
+    return new MoviesResult<>(movies, page == 0 ? movieDao.getSearchCount(criteria) : null);
+  }
+
+  /**
+   * Finds the movies of the given genres that fall within the rating, metacritic and year ranges.
+   *
+   * @param resultsPerPage - number of results per page.
+   * @param page - page identifier.
+   * @param criteria - genres and range filters.
+   * @param sort - index backed sort order.
+   * @return MoviesResult containing the movies and total results matching filter criteria.
+   */
+  public MoviesResult<Movie> getMoviesByRange(
+      int resultsPerPage, int page, MovieSearchCriteria criteria, MovieDao.IndexedSort sort) {
+    int skip = page * resultsPerPage;
+
+    Iterable<Movie> movies =
+        MovieDocumentMapper.mapToMovies(
+            movieDao.findMoviesByRange(criteria, sort, resultsPerPage, skip));
+    return new MoviesResult<>(movies, page == 0 ? movieDao.getRangeSearchCount(criteria) : null);
   }
 
   /**
@@ -205,29 +244,29 @@ public class MoviesService {
    * @param cast - cast members to be matched
    * @param page - page number
    * @param moviesPerPage - max number of movies per page
-   * @return Map containing the movies array, rating buckets, runtime bucket and total count of
-   *     results matching filter criteria.
+   * @return FacetedMoviesResult containing the movies, rating buckets, runtime buckets and total
+   *     count of results matching filter criteria, or null if the search returned nothing.
    */
-  public Map<String, ?> getMovieFacetedSearch(ArrayList<String> cast, int page, int moviesPerPage) {
+  public FacetedMoviesResult getMovieFacetedSearch(
+      ArrayList<String> cast, int page, int moviesPerPage) {
     int skip = page * moviesPerPage;
-    Map<String, Object> results = new HashMap<>();
 
     List<Movie> movies = new ArrayList<>();
     Document facetResult =
         movieDao.getMoviesCastFaceted(moviesPerPage, skip, cast.toArray(new String[0])).get(0);
 
-    if (facetResult != null) {
-      ArrayList<Document> moviesArray = (ArrayList<Document>) facetResult.get("movies");
-
-      if (moviesArray != null) {
-        moviesArray.iterator().forEachRemaining(x -> movies.add(MovieDocumentMapper.mapToMovie(x)));
-      }
-      results.put("movies", movies);
-      results.put("rating", facetResult.get("rating"));
-      results.put("runtime", facetResult.get("runtime"));
-      results.put("count", movieDao.getCastSearchCount(cast.toArray(new String[0])));
+    if (facetResult == null) {
+      return null;
     }
-    return results;
+    ArrayList<Document> moviesArray = (ArrayList<Document>) facetResult.get("movies");
+    if (moviesArray != null) {
+      moviesArray.iterator().forEachRemaining(x -> movies.add(MovieDocumentMapper.mapToMovie(x)));
+    }
+    return new FacetedMoviesResult(
+        movies,
+        facetResult.get("rating"),
+        facetResult.get("runtime"),
+        movieDao.getCastSearchCount(cast.toArray(new String[0])));
   }
 
   /**
@@ -245,25 +284,38 @@ public class MoviesService {
     updateComment.setMovieId(commentBody.get("movie_id"));
     updateComment.setName(commentBody.getOrDefault("name", ""));
     updateComment.setId(commentBody.get("comment_id"));
-    updateComment.setDate(new Date());
+    updateComment.setEditedAt(new Date());
     updateComment.setText(commentBody.get("updated_comment"));
-    if (!commentDao.updateComment(updateComment.getId(), updateComment.getText(), email)) {
-      // check if the email matches the current user
-      Comment currentComment = commentDao.getComment(updateComment.getId());
-      if (currentComment == null) {
-        results.put(
-            "error", MessageFormat.format("comment {0} does not exist", updateComment.getId()));
-        return false;
-      }
-      if (!email.equals(currentComment.getEmail())) {
-        results.put(
-            "error", "Could not update comment. Not authorized to update comments of other users");
-        return false;
-      }
+    Comment previous;
+    try {
+      previous =
+          commentDao.findAndUpdateComment(
+              updateComment.getId(), updateComment.getText(), email, updateComment.getEditedAt());
+    } catch (IncorrectDaoOperation e) {
+      results.put(
+          "error", MessageFormat.format("not able to update comment {0}", updateComment.getId()));
+      return false;
+    }
+    if (previous == null) {
+      results.put(
+          "error", MessageFormat.format("comment {0} does not exist", updateComment.getId()));
+      return false;
+    }
+    // the comment is only updated if the email matches the current user
+    if (!email.equals(previous.getEmail())) {
+      results.put(
+          "error", "Could not update comment. Not authorized to update comments of other users");
+      return false;
     }
+    movieVersionService.commentsChanged(updateComment.getMovieId());
 
-    Movie movie = MovieDocumentMapper.mapToMovie(movieDao.getMovie(updateComment.getMovieId()));
-    results.put("comments", movie.getComments());
+    Comment updated = null;
+    if (lightCommentResponse) {
+      updated = previous;
+      updated.setText(updateComment.getText());
+      updated.setEditedAt(updateComment.getEditedAt());
+    }
+    putComments(updateComment.getMovieId(), updated, results);
     return true;
   }
 
@@ -298,9 +350,9 @@ public class MoviesService {
           "error", MessageFormat.format("not able to add comment to movie `{0}` ", movieId));
       return false;
     }
+    movieVersionService.commentsChanged(movieId);
 
-    Movie movie = MovieDocumentMapper.mapToMovie(movieDao.getMovie(movieId));
-    results.put("comments", movie.getComments());
+    putComments(movieId, newComment, results);
     return true;
   }
 
@@ -322,10 +374,31 @@ public class MoviesService {
           MessageFormat.format("user `{0}` cannot delete comment `{1}`", email, commentId));
       return false;
     }
+    movieVersionService.commentsChanged(movieId);
 
+    putComments(movieId, null, results);
+    return true;
+  }
+
+  /**
+   * Populates the response of a comment write. In light mode, that is the written comment and the
+   * most recent comments of the movie, read from the `comments` collection alone. Otherwise it is
+   * every comment of the movie, as embedded by {@link MovieDao#getMovie(String)}.
+   *
+   * @param movieId - id of the commented movie.
+   * @param comment - added or updated comment, or null.
+   * @param results - map to be populated with the movie comments.
+   */
+  private void putComments(String movieId, Comment comment, Map<String, Object> results) {
+    if (lightCommentResponse) {
+      if (comment != null) {
+        results.put("comment", comment);
+      }
+      results.put("comments", commentDao.getMovieComments(movieId, responseComments));
+      return;
+    }
     Movie movie = MovieDocumentMapper.mapToMovie(movieDao.getMovie(movieId));
     results.put("comments", movie.getComments());
-    return true;
   }
 
   /**
@@ -337,14 +410,36 @@ public class MoviesService {
     return commentDao.mostActiveCommenters();
   }
 
+  /**
+   * Page of the comment report of a time window, served from the daily comment rollups.
+   *
+   * @param window - `day`, `week` or `month`, case insensitive.
+   * @param byMovie - whether to report movies instead of users.
+   * @param page - page number, starting at 0.
+   * @param perPage - max number of entries per page.
+   * @return List of Critic objects, or of MovieCommentCount objects if byMovie is set.
+   * @throws IllegalArgumentException if the window is unknown.
+   */
+  public List<?> commentReport(String window, boolean byMovie, int page, int perPage) {
+    CommentRollup.Window reportWindow = CommentRollup.Window.valueOf(window.toUpperCase());
+    return byMovie
+        ? commentRollup.getTopMovies(reportWindow, page, perPage)
+        : commentRollup.getTopCommenters(reportWindow, page, perPage);
+  }
+
   /**
    * Collects the configured pool size and user connection status.
    *
    * @return Map of key value pairs reflecting the configured userInfo, pool_size and wtimeout
-   *     settings.
+   *     settings, and the user_cache lookup counters.
    */
   public Map<String, ?> getConfiguration() {
 
-    return this.movieDao.getConfiguration();
+    Map<String, Object> configuration = this.movieDao.getConfiguration();
+    configuration.put("user_cache", userCache.getMetrics());
+    if (passwordEncoder != null) {
+      configuration.put("password_hashing", passwordEncoder.getMetrics());
+    }
+    return configuration;
   }
 }
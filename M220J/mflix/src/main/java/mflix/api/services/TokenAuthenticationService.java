@@ -1,10 +1,13 @@
 package mflix.api.services;
 
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import mflix.api.cache.VerifiedTokenCache;
 import mflix.api.models.UserPrincipal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -27,11 +30,16 @@ public class TokenAuthenticationService {
   @Value("${jwtSecret}")
   private String jwtSecret;
 
+  @Value("${jwtRefreshWindowInMs}")
+  private long jwtRefreshWindowInMs;
+
   private final String TOKEN_PREFIX = "Bearer";
   private final String HEADER_STRING = "Authorization";
 
   private final Logger log;
 
+  private VerifiedTokenCache tokenCache;
+
   public TokenAuthenticationService() {
     super();
     log = LoggerFactory.getLogger(this.getClass());
@@ -47,6 +55,29 @@ public class TokenAuthenticationService {
     return TOKEN_PREFIX + " " + JWT;
   }
 
+  /**
+   * Authorization header to hand back after a write. The caller's token is reused while it is
+   * valid for more than `jwtRefreshWindowInMs`, and a new one is minted once it gets closer to its
+   * expiry, so that a write does not sign a new token every time.
+   *
+   * <p>The expiry is read from the verified tokens cache, filled when the handler read the user
+   * email from the same header; without a cached expiry a new token is minted.
+   *
+   * @param authorizationHeader - `Authorization` header of the request.
+   * @param username - user email, read from that header.
+   * @return `Bearer` authorization header value.
+   */
+  public String refreshJWTHeader(String authorizationHeader, String username) {
+    if (authorizationHeader != null && tokenCache != null) {
+      String jwt = trimToken(authorizationHeader);
+      long expiresAt = tokenCache.getExpiresAt(jwt, username);
+      if (expiresAt - System.currentTimeMillis() > jwtRefreshWindowInMs) {
+        return TOKEN_PREFIX + " " + jwt;
+      }
+    }
+    return mintJWTHeader(username);
+  }
+
   public void addAuthentication(HttpServletResponse res, String username) {
     String headerValue = mintJWTHeader(username);
     res.addHeader(HEADER_STRING, headerValue);
@@ -56,13 +87,30 @@ public class TokenAuthenticationService {
     return token.replace(TOKEN_PREFIX, "").trim();
   }
 
+  /**
+   * Sets the cache of verified tokens, checked before parsing and verifying a token.
+   *
+   * @param tokenCache - verified tokens cache.
+   */
+  @Autowired(required = false)
+  public void setTokenCache(VerifiedTokenCache tokenCache) {
+    this.tokenCache = tokenCache;
+  }
+
   public String getAuthenticationUser(String token) {
+    String jwt = trimToken(token);
+    if (tokenCache != null) {
+      String subject = tokenCache.getSubject(jwt);
+      if (subject != null) {
+        return subject;
+      }
+    }
     try {
-      return Jwts.parser()
-          .setSigningKey(jwtSecret)
-          .parseClaimsJws(trimToken(token))
-          .getBody()
-          .getSubject();
+      Claims claims = Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(jwt).getBody();
+      if (tokenCache != null && claims.getExpiration() != null) {
+        tokenCache.put(jwt, claims.getSubject(), claims.getExpiration().getTime());
+      }
+      return claims.getSubject();
     } catch (Exception e) {
       log.error("Cannot validate user token `{}`: error thrown - {}", token, e.getMessage());
     }
@@ -82,12 +130,22 @@ public class TokenAuthenticationService {
   public String generateToken(Authentication authentication) {
 
     UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+    return generateToken(userPrincipal.getEmail());
+  }
+
+  /**
+   * Generates the token of an authenticated user.
+   *
+   * @param email - user email, subject of the token.
+   * @return JWT string token.
+   */
+  public String generateToken(String email) {
 
     Date now = new Date();
     Date expiryDate = new Date(now.getTime() + jwtExpirationInMs);
 
     return Jwts.builder()
-        .setSubject(userPrincipal.getEmail())
+        .setSubject(email)
         .setIssuedAt(new Date())
         .setExpiration(expiryDate)
         .signWith(SignatureAlgorithm.HS512, jwtSecret)
@@ -7,9 +7,7 @@ import mflix.api.models.UserPrincipal;
 import mflix.api.models.UserRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -25,12 +23,13 @@ public class UserService implements UserDetailsService {
 
   @Autowired private PasswordEncoder passwordEncoder;
 
-  @Autowired private AuthenticationManager authenticationManager;
-
   @Autowired private TokenAuthenticationService authService;
 
   @Autowired private UserDao userDao;
 
+  /** Hash checked against the password of unknown users, computed on the first one. */
+  private volatile String unknownUserHash;
+
   public UserService() {
     super();
   }
@@ -62,6 +61,31 @@ public class UserService implements UserDetailsService {
     return createUser(user, errors);
   }
 
+  /**
+   * Registers an user: creates it from the UserRegistry object and logs it in. The password is
+   * hashed once, for the insert, and the session is started without checking it against that hash.
+   *
+   * @param register - user register object
+   * @param results - map to collect the `auth_token`, or any error message
+   * @return null in case of failure, the new user object in case of success.
+   */
+  public User registerUser(UserRegistry register, Map<String, String> results) {
+    User user = createUser(register, results);
+    return user == null ? null : startSession(user, results);
+  }
+
+  /**
+   * Registers an admin user, creating and logging it in as {@link #registerUser} does.
+   *
+   * @param register - registration data for this user.
+   * @param results - map to collect the `auth_token`, or any error message
+   * @return null in case of failure, the new user object in case of success.
+   */
+  public User registerAdminUser(UserRegistry register, Map<String, String> results) {
+    User user = createAdminUser(register, results);
+    return user == null ? null : startSession(user, results);
+  }
+
   private User getUserFromRegistry(UserRegistry register) {
     User user = new User();
     // encode password
@@ -84,30 +108,50 @@ public class UserService implements UserDetailsService {
     return userDao.getUser(email);
   }
 
-  private String generateUserToken(String email, String password) {
-    Authentication authentication =
-        authenticationManager.authenticate(
-            new UsernamePasswordAuthenticationToken(email, password));
-    return authService.generateToken(authentication);
+  /**
+   * Checks the password of a user, hashing it even if the user is unknown so that an unknown email
+   * takes as long as a wrong password.
+   */
+  private void checkPassword(User user, String password) {
+    if (user == null || user.isEmpty()) {
+      if (unknownUserHash == null) {
+        unknownUserHash = passwordEncoder.encode("unknown user password");
+      }
+      passwordEncoder.matches(password, unknownUserHash);
+      throw new BadCredentialsException("Bad credentials");
+    }
+    if (user.getHashedpw() == null || !passwordEncoder.matches(password, user.getHashedpw())) {
+      throw new BadCredentialsException("Bad credentials");
+    }
   }
 
   /**
    * Authenticates the user by storing an entry in the sessions collection. In case authentication
    * is unsuccessful, return null User.
    *
+   * <p>The user is read once, its password checked against that read, and the session written
+   * with a single upsert, so that a login takes two database round trips.
+   *
    * @param email - identifies the user
    * @param password - user password
    * @param results - map to collect any relevant message
    * @return User object that matches the provided email and password.
+   * @throws BadCredentialsException if the user does not exist or the password does not match.
    */
   public User authenticate(String email, String password, Map<String, String> results) {
-    String jwt = generateUserToken(email, password);
-    if (!userDao.createUserSession(email, jwt)) {
+    User user = userDao.getUser(email);
+    checkPassword(user, password);
+    return startSession(user, results);
+  }
+
+  private User startSession(User user, Map<String, String> results) {
+    String jwt = authService.generateToken(user.getEmail());
+    if (!userDao.createUserSession(user.getEmail(), jwt)) {
       results.put("msg", "unable to login user");
       return null;
     }
     results.put("auth_token", jwt);
-    return userDao.getUser(email);
+    return user;
   }
 
   /**
@@ -129,14 +173,14 @@ public class UserService implements UserDetailsService {
    * @return true if successful deletes the user from mflix
    */
   public boolean deleteUser(String email, String password, Map<String, String> results) {
-    // check if hashed password matches
-    String hpwd = passwordEncoder.encode(password);
-    if (userDao.getUser(email) == null) {
+    User user = userDao.getUser(email);
+    if (user == null) {
       results.put("msg", "user does not exist");
       return false;
     }
 
-    if (!passwordEncoder.matches(password, hpwd)) {
+    // check if the password matches the stored hash
+    if (user.getHashedpw() == null || !passwordEncoder.matches(password, user.getHashedpw())) {
       results.put("msg", "passwords do not match");
       return false;
     }
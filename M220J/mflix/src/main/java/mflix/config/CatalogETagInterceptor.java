@@ -0,0 +1,31 @@
+package mflix.config;
+
+import mflix.api.services.MovieVersionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Answers conditional requests on the movie list and search pages from the catalog version,
+ * before the controller queries the database.
+ */
+@Component
+public class CatalogETagInterceptor implements HandlerInterceptor {
+
+  @Autowired private MovieVersionService movieVersionService;
+
+  @Override
+  public boolean preHandle(
+      HttpServletRequest request, HttpServletResponse response, Object handler) {
+    String eTag = movieVersionService.getCatalogETag();
+    if (eTag == null) {
+      return true;
+    }
+    // sets the ETag header, or the 304 status if the client copy is current
+    return !new ServletWebRequest(request, response).checkNotModified(eTag);
+  }
+}
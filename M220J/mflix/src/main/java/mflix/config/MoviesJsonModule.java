@@ -0,0 +1,147 @@
+package mflix.config;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import mflix.api.cache.JsonFragment;
+import mflix.api.cache.MovieJsonCache;
+import mflix.api.models.FacetedMoviesPage;
+import mflix.api.models.FacetedMoviesResult;
+import mflix.api.models.Movie;
+import mflix.api.models.MoviesPage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Serializers of the movie list envelopes, registered with the application ObjectMapper. They
+ * write the fields in the iteration order of the HashMap envelopes they replace, so that the JSON
+ * sent to the clients is unchanged.
+ *
+ * <p>Listed movies are spliced in from the {@link MovieJsonCache} when it holds their JSON.
+ */
+@Component
+public class MoviesJsonModule extends SimpleModule {
+
+  private final MovieJsonCache movieJsonCache;
+
+  public MoviesJsonModule() {
+    this(null);
+  }
+
+  @Autowired
+  public MoviesJsonModule(MovieJsonCache movieJsonCache) {
+    super("MoviesJsonModule");
+    this.movieJsonCache = movieJsonCache;
+    addSerializer(MoviesPage.class, new MoviesPageSerializer());
+    addSerializer(FacetedMoviesPage.class, new FacetedMoviesPageSerializer());
+  }
+
+  /**
+   * Writes the movies one at a time, so that cursor backed movies are read from the database as
+   * they are written to the response. The cursor is closed once written.
+   */
+  private void writeMovies(
+      String fieldName,
+      Iterable<?> movies,
+      long catalogVersion,
+      JsonGenerator gen,
+      SerializerProvider provider)
+      throws IOException {
+    gen.writeArrayFieldStart(fieldName);
+    Iterator<?> iterator = movies.iterator();
+    try {
+      while (iterator.hasNext()) {
+        Object value = iterator.next();
+        if (movieJsonCache != null
+            && value instanceof Movie
+            && movieJsonCache.accepts((Movie) value)) {
+          Movie movie = (Movie) value;
+          JsonFragment fragment = movieJsonCache.get(movie);
+          if (fragment == null) {
+            fragment = movieJsonCache.put(movie, serialize(movie, gen, provider), catalogVersion);
+          }
+          gen.writeRawValue(fragment);
+        } else {
+          provider.defaultSerializeValue(value, gen);
+        }
+      }
+    } finally {
+      if (iterator instanceof Closeable) {
+        ((Closeable) iterator).close();
+      }
+    }
+    gen.writeEndArray();
+  }
+
+  private static byte[] serialize(Movie movie, JsonGenerator gen, SerializerProvider provider)
+      throws IOException {
+    JsonFactory factory =
+        gen.getCodec() != null ? gen.getCodec().getFactory() : new JsonFactory();
+    ByteArrayOutputStream out = new ByteArrayOutputStream(2048);
+    try (JsonGenerator fragmentGen = factory.createGenerator(out, JsonEncoding.UTF8)) {
+      provider.defaultSerializeValue(movie, fragmentGen);
+    }
+    return out.toByteArray();
+  }
+
+  private final class MoviesPageSerializer extends StdSerializer<MoviesPage> {
+
+    MoviesPageSerializer() {
+      super(MoviesPage.class);
+    }
+
+    @Override
+    public void serialize(MoviesPage page, JsonGenerator gen, SerializerProvider provider)
+        throws IOException {
+      gen.writeStartObject();
+      // `titles` hashes before `entries_per_page`, `movies` after it
+      if ("movies".equals(page.getResultsKey())) {
+        writeMovies(
+            page.getResultsKey(), page.getMovies(), page.getCatalogVersion(), gen, provider);
+        gen.writeNumberField("entries_per_page", page.getEntriesPerPage());
+      } else {
+        gen.writeNumberField("entries_per_page", page.getEntriesPerPage());
+        writeMovies(
+            page.getResultsKey(), page.getMovies(), page.getCatalogVersion(), gen, provider);
+      }
+      gen.writeNumberField("page", page.getPage());
+      provider.defaultSerializeField("filters", page.getFilters(), gen);
+      if (page.getTotalResults() != null) {
+        gen.writeNumberField("total_results", page.getTotalResults());
+      }
+      gen.writeEndObject();
+    }
+  }
+
+  private final class FacetedMoviesPageSerializer extends StdSerializer<FacetedMoviesPage> {
+
+    FacetedMoviesPageSerializer() {
+      super(FacetedMoviesPage.class);
+    }
+
+    @Override
+    public void serialize(FacetedMoviesPage page, JsonGenerator gen, SerializerProvider provider)
+        throws IOException {
+      FacetedMoviesResult result = page.getResult();
+      gen.writeStartObject();
+      writeMovies("movies", result.getMovies(), page.getCatalogVersion(), gen, provider);
+      gen.writeNumberField("entries_per_page", page.getEntriesPerPage());
+      provider.defaultSerializeField("filters", page.getFilters(), gen);
+      gen.writeNumberField("page", page.getPage());
+      gen.writeObjectFieldStart("facets");
+      provider.defaultSerializeField("rating", result.getRating(), gen);
+      provider.defaultSerializeField("runtime", result.getRuntime(), gen);
+      gen.writeEndObject();
+      gen.writeNumberField("total_results", result.getCount());
+      gen.writeEndObject();
+    }
+  }
+}
@@ -0,0 +1,190 @@
+package mflix.config;
+
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.resource.AbstractResourceResolver;
+import org.springframework.web.servlet.resource.HttpResource;
+import org.springframework.web.servlet.resource.ResourceResolverChain;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Serves the `.br` or `.gz` variant of a static asset, as produced at build time, when the client
+ * accepts that encoding. Assets have content hashed file names, so every response, compressed or
+ * not, is marked as immutable.
+ */
+public class PrecompressedResourceResolver extends AbstractResourceResolver {
+
+  /** Encodings in order of preference, with the file extension of their precompressed variant. */
+  private static final List<String[]> ENCODINGS =
+      Arrays.asList(new String[] {"br", ".br"}, new String[] {"gzip", ".gz"});
+
+  private final String cacheControl;
+
+  /**
+   * @param maxAgeSeconds - max-age of the `Cache-Control` header.
+   */
+  public PrecompressedResourceResolver(long maxAgeSeconds) {
+    this.cacheControl = "public, max-age=" + maxAgeSeconds + ", immutable";
+  }
+
+  @Override
+  protected Resource resolveResourceInternal(
+      HttpServletRequest request,
+      String requestPath,
+      List<? extends Resource> locations,
+      ResourceResolverChain chain) {
+    Resource resource = chain.resolveResource(request, requestPath, locations);
+    if (resource == null || request == null) {
+      return resource;
+    }
+    String accepted = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+    for (String[] encoding : ENCODINGS) {
+      if (accepts(accepted, encoding[0])) {
+        try {
+          Resource encoded = resource.createRelative(resource.getFilename() + encoding[1]);
+          if (encoded.isReadable()) {
+            return new AssetResource(resource, encoded, encoding[0]);
+          }
+        } catch (IOException e) {
+          logger.trace("No " + encoding[0] + " variant of " + requestPath, e);
+        }
+      }
+    }
+    return new AssetResource(resource, resource, null);
+  }
+
+  /**
+   * Tells if an `Accept-Encoding` header accepts a content coding: the coding, or else `*`, is
+   * listed without a zero `q` weight.
+   *
+   * @param acceptEncoding - `Accept-Encoding` header value, possibly null.
+   * @param coding - content coding, like `gzip`.
+   * @return true if the coding is acceptable.
+   */
+  static boolean accepts(String acceptEncoding, String coding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    Boolean wildcard = null;
+    for (String element : acceptEncoding.split(",")) {
+      String[] params = element.split(";");
+      String name = params[0].trim();
+      boolean acceptable = true;
+      for (int i = 1; i < params.length; i++) {
+        String[] param = params[i].split("=", 2);
+        if (param.length == 2 && "q".equalsIgnoreCase(param[0].trim())) {
+          try {
+            acceptable = Float.parseFloat(param[1].trim()) > 0;
+          } catch (NumberFormatException e) {
+            acceptable = false;
+          }
+        }
+      }
+      if (name.equalsIgnoreCase(coding)) {
+        return acceptable;
+      }
+      if ("*".equals(name)) {
+        wildcard = acceptable;
+      }
+    }
+    return wildcard != null && wildcard;
+  }
+
+  @Override
+  protected String resolveUrlPathInternal(
+      String resourceUrlPath, List<? extends Resource> locations, ResourceResolverChain chain) {
+    return chain.resolveUrlPath(resourceUrlPath, locations);
+  }
+
+  /** Asset content, possibly encoded, exposed under the name and media type of the original. */
+  private final class AssetResource extends AbstractResource implements HttpResource {
+
+    private final Resource original;
+
+    private final Resource content;
+
+    private final String encoding;
+
+    private AssetResource(Resource original, Resource content, String encoding) {
+      this.original = original;
+      this.content = content;
+      this.encoding = encoding;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+      return content.getInputStream();
+    }
+
+    @Override
+    public boolean exists() {
+      return content.exists();
+    }
+
+    @Override
+    public boolean isReadable() {
+      return content.isReadable();
+    }
+
+    @Override
+    public URL getURL() throws IOException {
+      return content.getURL();
+    }
+
+    @Override
+    public URI getURI() throws IOException {
+      return content.getURI();
+    }
+
+    @Override
+    public File getFile() throws IOException {
+      return content.getFile();
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+      return content.contentLength();
+    }
+
+    @Override
+    public long lastModified() throws IOException {
+      return content.lastModified();
+    }
+
+    @Override
+    public Resource createRelative(String relativePath) throws IOException {
+      return original.createRelative(relativePath);
+    }
+
+    @Override
+    public String getFilename() {
+      return original.getFilename();
+    }
+
+    @Override
+    public String getDescription() {
+      return content.getDescription();
+    }
+
+    @Override
+    public HttpHeaders getResponseHeaders() {
+      HttpHeaders headers = new HttpHeaders();
+      headers.setCacheControl(cacheControl);
+      headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+      if (StringUtils.hasText(encoding)) {
+        headers.add(HttpHeaders.CONTENT_ENCODING, encoding);
+      }
+      return headers;
+    }
+  }
+}
@@ -1,7 +1,10 @@
 package mflix.config;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
@@ -9,6 +12,11 @@ public class WebMvcConfig implements WebMvcConfigurer {
 
   private final long MAX_AGE_SECS = 3600;
 
+  /** Hashed assets never change under the same name, so they can be cached for a year. */
+  private final long ASSETS_MAX_AGE_SECS = 365 * 24 * 3600;
+
+  @Autowired private CatalogETagInterceptor catalogETagInterceptor;
+
   @Override
   public void addCorsMappings(CorsRegistry registry) {
     registry
@@ -17,4 +25,26 @@ public class WebMvcConfig implements WebMvcConfigurer {
         .allowedMethods("HEAD", "OPTIONS", "GET", "POST", "PUT", "PATCH", "DELETE")
         .maxAge(MAX_AGE_SECS);
   }
+
+  @Override
+  public void addInterceptors(InterceptorRegistry registry) {
+    registry
+        .addInterceptor(catalogETagInterceptor)
+        .addPathPatterns(
+            "/api/v1/movies/",
+            "/api/v1/movies/search",
+            "/api/v1/movies/range-search",
+            "/api/v1/movies/facet-search",
+            "/api/v1/movies/countries");
+  }
+
+  @Override
+  public void addResourceHandlers(ResourceHandlerRegistry registry) {
+    // the chain cache does not key on the accepted encodings, so it is left out
+    registry
+        .addResourceHandler("/static/**")
+        .addResourceLocations("classpath:/build/static/")
+        .resourceChain(false)
+        .addResolver(new PrecompressedResourceResolver(ASSETS_MAX_AGE_SECS));
+  }
 }
@@ -1,9 +1,11 @@
 package mflix.config;
 
+import mflix.api.security.BoundedPasswordEncoder;
 import mflix.api.security.JWTAuthEntryPoint;
 import mflix.api.security.JWTAuthenticationFilter;
 import mflix.api.services.TokenAuthenticationService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -14,26 +16,46 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 
 @Configuration
 @EnableWebSecurity
 public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
+  /**
+   * bcrypt password encoder, hashing on a bounded pool of threads rather than on the request
+   * threads. Its threads are stopped through the inferred `shutdown` destroy method.
+   */
   @Bean
-  public PasswordEncoder passwordEncoder() {
-    return new BCryptPasswordEncoder();
+  public BoundedPasswordEncoder passwordEncoder(
+      @Value("${api.auth.hashing.threads}") int threads,
+      @Value("${api.auth.hashing.queue_size}") int queueSize) {
+    return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), threads, queueSize);
   }
 
   @Autowired private JWTAuthEntryPoint unauthorizedHandler;
 
   @Autowired private TokenAuthenticationService authService;
 
+  /** Routes permitted to anonymous requests, on which the JWT filter does not run. */
+  static final RequestMatcher PUBLIC_ROUTES =
+      new OrRequestMatcher(
+          new AntPathRequestMatcher("/**", HttpMethod.OPTIONS.name()),
+          new AntPathRequestMatcher("/api/v1/movies/**"),
+          new AntPathRequestMatcher("/"),
+          new AntPathRequestMatcher("/**/*.{js,html,css}"),
+          new AntPathRequestMatcher("/api/v1/user/login"),
+          new AntPathRequestMatcher("/api/v1/user/register"),
+          new AntPathRequestMatcher("/api/v1/user/make-admin"));
+
   @Override
   protected void configure(HttpSecurity http) throws Exception {
     JWTAuthenticationFilter authFilter = new JWTAuthenticationFilter();
     authFilter.setAuthService(authService);
+    authFilter.setPublicRoutes(PUBLIC_ROUTES);
     http.csrf()
         .disable()
         .exceptionHandling()
@@ -43,19 +65,7 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
         .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
         .and()
         .authorizeRequests()
-        .antMatchers(HttpMethod.OPTIONS)
-        .permitAll()
-        .antMatchers("/api/v1/movies/**")
-        .permitAll()
-        .antMatchers("/")
-        .permitAll()
-        .antMatchers("/**/*.{js,html,css}")
-        .permitAll()
-        .antMatchers("/api/v1/user/login")
-        .permitAll()
-        .antMatchers("/api/v1/user/register")
-        .permitAll()
-        .antMatchers("/api/v1/user/make-admin")
+        .requestMatchers(PUBLIC_ROUTES)
         .permitAll()
         .antMatchers("/api/v1/user/")
         .authenticated()
@@ -0,0 +1,101 @@
+package mflix.api.cache;
+
+import mflix.api.models.User;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+public class UserCacheTest {
+
+  private static final String EMAIL = "user@cache.io";
+
+  private final AtomicInteger reads = new AtomicInteger();
+
+  private final Function<String, User> loader =
+      email -> {
+        reads.incrementAndGet();
+        User user = new User();
+        user.setEmail(email);
+        return user;
+      };
+
+  @Before
+  public void setUp() {
+    RequestContextHolder.setRequestAttributes(
+        new ServletRequestAttributes(new MockHttpServletRequest()));
+  }
+
+  @After
+  public void tearDown() {
+    RequestContextHolder.resetRequestAttributes();
+  }
+
+  @Test
+  public void testRequestReadsUserOnce() {
+    UserCache cache = new UserCache(true, 0, 0);
+
+    Assert.assertSame(cache.get(EMAIL, loader), cache.get(EMAIL, loader));
+    Assert.assertEquals(1, reads.get());
+    Assert.assertEquals(1L, (long) cache.getMetrics().get("request_hits"));
+
+    RequestContextHolder.resetRequestAttributes();
+    cache.get(EMAIL, loader);
+    Assert.assertEquals("Without cache, a new request reads the user again", 2, reads.get());
+  }
+
+  @Test
+  public void testCachedUserIsSharedByRequests() {
+    UserCache cache = new UserCache(true, 10, 60);
+    cache.get(EMAIL, loader);
+
+    RequestContextHolder.resetRequestAttributes();
+    cache.get(EMAIL, loader);
+
+    Assert.assertEquals(1, reads.get());
+    Assert.assertEquals(1L, (long) cache.getMetrics().get("cache_hits"));
+  }
+
+  @Test
+  public void testInvalidatedUserIsReadAgain() {
+    UserCache cache = new UserCache(true, 10, 60);
+    cache.get(EMAIL, loader);
+
+    cache.invalidate(EMAIL);
+    cache.get(EMAIL, loader);
+
+    Assert.assertEquals(2, reads.get());
+  }
+
+  @Test
+  public void testUserReadDuringInvalidationIsNotCached() {
+    UserCache cache = new UserCache(true, 10, 60);
+    RequestContextHolder.resetRequestAttributes();
+    cache.get(
+        EMAIL,
+        email -> {
+          cache.invalidate(email);
+          return loader.apply(email);
+        });
+
+    cache.get(EMAIL, loader);
+    Assert.assertEquals(2, reads.get());
+  }
+
+  @Test
+  public void testCacheIsBounded() {
+    UserCache cache = new UserCache(true, 1, 60);
+    RequestContextHolder.resetRequestAttributes();
+    cache.get(EMAIL, loader);
+    cache.get("other@cache.io", loader);
+
+    cache.get(EMAIL, loader);
+    Assert.assertEquals(3, reads.get());
+  }
+}
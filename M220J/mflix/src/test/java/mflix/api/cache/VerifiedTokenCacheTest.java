@@ -0,0 +1,71 @@
+package mflix.api.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class VerifiedTokenCacheTest {
+
+  private static long inOneHour() {
+    return System.currentTimeMillis() + 3600_000;
+  }
+
+  @Test
+  public void testVerifiedTokenIsServed() {
+    VerifiedTokenCache cache = new VerifiedTokenCache(true, 10);
+    cache.put("token", "user@mflix.io", inOneHour());
+
+    Assert.assertEquals("user@mflix.io", cache.getSubject("token"));
+    Assert.assertNull(cache.getSubject("other"));
+  }
+
+  @Test
+  public void testExpiredTokenIsNotServed() {
+    VerifiedTokenCache cache = new VerifiedTokenCache(true, 10);
+    cache.put("expired", "user@mflix.io", System.currentTimeMillis() - 1);
+    Assert.assertNull(cache.getSubject("expired"));
+    Assert.assertEquals("An expired token should not be cached", 0, cache.size());
+  }
+
+  @Test
+  public void testExpiredTokensAreEvictedFirst() throws InterruptedException {
+    VerifiedTokenCache cache = new VerifiedTokenCache(true, 2);
+    cache.put("live", "live@mflix.io", inOneHour());
+    cache.put("expiring", "expiring@mflix.io", System.currentTimeMillis() + 20);
+    Thread.sleep(40);
+
+    cache.put("new", "new@mflix.io", inOneHour());
+
+    Assert.assertEquals(2, cache.size());
+    Assert.assertEquals("live@mflix.io", cache.getSubject("live"));
+    Assert.assertEquals("new@mflix.io", cache.getSubject("new"));
+  }
+
+  @Test
+  public void testCacheIsBounded() {
+    VerifiedTokenCache cache = new VerifiedTokenCache(true, 2);
+    for (int i = 0; i < 5; i++) {
+      cache.put("token" + i, "user" + i, inOneHour());
+    }
+    Assert.assertEquals(2, cache.size());
+    Assert.assertEquals("user4", cache.getSubject("token4"));
+  }
+
+  @Test
+  public void testExpiryIsServedForTheTokenSubject() {
+    VerifiedTokenCache cache = new VerifiedTokenCache(true, 10);
+    long expiresAt = inOneHour();
+    cache.put("token", "user@mflix.io", expiresAt);
+
+    Assert.assertEquals(expiresAt, cache.getExpiresAt("token", "user@mflix.io"));
+    Assert.assertEquals(0, cache.getExpiresAt("token", "other@mflix.io"));
+    Assert.assertEquals(0, cache.getExpiresAt("other", "user@mflix.io"));
+  }
+
+  @Test
+  public void testDisabledCacheServesNothing() {
+    VerifiedTokenCache cache = new VerifiedTokenCache(false, 10);
+    cache.put("token", "user@mflix.io", inOneHour());
+    Assert.assertNull(cache.getSubject("token"));
+    Assert.assertEquals(0, cache.getExpiresAt("token", "user@mflix.io"));
+  }
+}
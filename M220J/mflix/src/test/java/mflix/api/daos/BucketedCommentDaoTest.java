@@ -0,0 +1,177 @@
+package mflix.api.daos;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import mflix.api.models.Comment;
+import mflix.config.MongoDBConfiguration;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+@SpringBootTest(classes = {MongoDBConfiguration.class})
+@EnableConfigurationProperties
+@EnableAutoConfiguration
+@RunWith(SpringJUnit4ClassRunner.class)
+public class BucketedCommentDaoTest extends TicketTest {
+
+  private static final String EMAIL = "bucketed@comments.io";
+
+  @Autowired MongoClient mongoClient;
+
+  @Value("${spring.mongodb.database}")
+  String databaseName;
+
+  private BucketedCommentDao dao;
+
+  private ObjectId movieId;
+
+  @Before
+  public void setUp() {
+    dao = new BucketedCommentDao(mongoClient, databaseName, 3);
+    dao.createIndexes();
+    movieId = new ObjectId();
+  }
+
+  @After
+  public void tearDown() {
+    bucketsCollection().deleteMany(Filters.eq("movie_id", movieId));
+  }
+
+  private MongoCollection<Document> bucketsCollection() {
+    return mongoClient
+        .getDatabase(databaseName)
+        .getCollection(BucketedCommentDao.BUCKETS_COLLECTION);
+  }
+
+  private Comment fakeComment(int minutesAgo) {
+    Comment comment = new Comment();
+    comment.setId(dao.generateObjectId().toHexString());
+    comment.setEmail(EMAIL);
+    comment.setName("bucketed");
+    comment.setText(randomText(20));
+    comment.setDate(new Date(System.currentTimeMillis() - minutesAgo * 60_000L));
+    comment.setMovieObjectId(movieId);
+    return comment;
+  }
+
+  @Test
+  public void testCommentsAreBucketedNewestFirst() {
+    List<Comment> added = new ArrayList<>();
+    for (int i = 7; i > 0; i--) {
+      added.add(dao.addComment(fakeComment(i)));
+    }
+
+    Assert.assertEquals(
+        "7 comments should fill 3 buckets of 3",
+        3,
+        bucketsCollection().countDocuments(Filters.eq("movie_id", movieId)));
+
+    List<Comment> comments = dao.getMovieComments(movieId.toHexString(), 5);
+    Assert.assertEquals(5, comments.size());
+    for (int i = 0; i < comments.size(); i++) {
+      Assert.assertEquals(
+          "Comments should be returned newest first",
+          added.get(added.size() - 1 - i).getId(),
+          comments.get(i).getId());
+    }
+  }
+
+  @Test
+  public void testEditedCommentKeepsItsPlace() {
+    Comment older = dao.addComment(fakeComment(2));
+    Comment newer = dao.addComment(fakeComment(1));
+
+    Date editedAt = new Date();
+    dao.findAndUpdateComment(older.getId(), "edited", EMAIL, editedAt);
+
+    List<Comment> comments = dao.getMovieComments(movieId.toHexString(), 2);
+    Assert.assertEquals(newer.getId(), comments.get(0).getId());
+    Assert.assertEquals(
+        "An edited comment should keep its place", older.getId(), comments.get(1).getId());
+    Assert.assertEquals(older.getDate(), comments.get(1).getDate());
+    Assert.assertEquals(editedAt, comments.get(1).getEditedAt());
+  }
+
+  @Test
+  public void testUpdateAndDeleteBucketedComment() {
+    Comment comment = dao.addComment(fakeComment(1));
+
+    Assert.assertFalse(
+        "Only the author can update a comment",
+        dao.updateComment(comment.getId(), "edited", "someone@else.io"));
+    Assert.assertTrue(dao.updateComment(comment.getId(), "edited", EMAIL));
+    Assert.assertEquals("edited", dao.getComment(comment.getId()).getText());
+    Assert.assertEquals(movieId, dao.getComment(comment.getId()).getMovieObjectId());
+
+    Assert.assertTrue(dao.deleteComment(comment.getId(), EMAIL));
+    Assert.assertNull("A deleted comment should be gone", dao.getComment(comment.getId()));
+  }
+
+  @Test
+  public void testConcurrentInsertsFillOneBucketAtATime() throws Exception {
+    int threads = 8;
+    int perThread = 10;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<Integer>> results = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      results.add(
+          executor.submit(
+              () -> {
+                start.await();
+                int added = 0;
+                for (int i = 0; i < perThread; i++) {
+                  if (dao.addComment(fakeComment(0)) != null) {
+                    added++;
+                  }
+                }
+                return added;
+              }));
+    }
+    start.countDown();
+    int added = 0;
+    for (Future<Integer> result : results) {
+      added += result.get();
+    }
+    executor.shutdown();
+    Assert.assertEquals("Every comment should be added", threads * perThread, added);
+
+    List<Document> buckets =
+        bucketsCollection()
+            .find(Filters.eq("movie_id", movieId))
+            .sort(Sorts.ascending("n"))
+            .into(new ArrayList<>());
+    Assert.assertEquals(
+        "80 comments should fill 27 buckets of 3", (added + 2) / 3, buckets.size());
+    for (int n = 0; n < buckets.size(); n++) {
+      Document bucket = buckets.get(n);
+      Assert.assertEquals("Buckets should be numbered in order", n, (int) bucket.getInteger("n"));
+      if (n < buckets.size() - 1) {
+        Assert.assertEquals(
+            "Only the most recent bucket should have room left",
+            3,
+            (int) bucket.getInteger("count"));
+      }
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package mflix.api.daos;
+
+import com.mongodb.client.MongoClient;
+import mflix.config.MongoDBConfiguration;
+import org.bson.Document;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@SpringBootTest(classes = {MongoDBConfiguration.class})
+@EnableConfigurationProperties
+@EnableAutoConfiguration
+@RunWith(SpringJUnit4ClassRunner.class)
+public class CatalogMirrorTest extends TicketTest {
+
+  private MovieDao dao;
+  private MovieCatalogMirror mirror;
+  @Autowired MongoClient mongoClient;
+
+  @Value("${spring.mongodb.database}")
+  String databaseName;
+
+  @Before
+  public void setUp() {
+    this.dao = new MovieDao(mongoClient, databaseName);
+    MovieChangeWatcher watcher = new MovieChangeWatcher(mongoClient, databaseName);
+    this.mirror = new MovieCatalogMirror(mongoClient, databaseName, watcher, true, 4);
+    // load the collection without waiting on the change stream
+    this.mirror.onReset();
+  }
+
+  private List<Object> ids(List<Document> movies) {
+    return movies.stream().map(m -> m.get("_id")).collect(Collectors.toList());
+  }
+
+  @Test
+  public void testMirrorLoadsAllMovies() {
+    Assert.assertEquals(
+        "Mirror should hold every movie document", dao.getMoviesCount(), mirror.getMoviesCount());
+  }
+
+  @Test
+  public void testMirrorCountsMatchDatabase() {
+    Assert.assertEquals(
+        "Cast count should match the database count",
+        dao.getCastSearchCount("Tom Hanks"),
+        mirror.getCastSearchCount("Tom Hanks"));
+    Assert.assertEquals(
+        "Genre count should match the database count",
+        dao.getGenresSearchCount("History"),
+        mirror.getGenresSearchCount("History"));
+  }
+
+  @Test
+  public void testMirrorPagingByCast() {
+    List<Document> movies = mirror.getMoviesByCast(20, 40, "Tom Hanks");
+    Assert.assertEquals("Incorrect count in page 3", 11, movies.size());
+  }
+
+  @Test
+  public void testMirrorCountries() {
+    Assert.assertEquals(
+        "Country matches should be the same as the database query",
+        ids(dao.getMoviesByCountry("Kosovo")).stream().sorted().collect(Collectors.toList()),
+        ids(mirror.getMoviesByCountry("Kosovo")).stream().sorted().collect(Collectors.toList()));
+  }
+}
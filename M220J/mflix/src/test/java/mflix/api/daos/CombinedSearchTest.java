@@ -0,0 +1,81 @@
+package mflix.api.daos;
+
+import com.mongodb.client.MongoClient;
+import mflix.api.models.MovieSearchCriteria;
+import mflix.config.MongoDBConfiguration;
+import org.bson.Document;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.Collections;
+import java.util.List;
+
+@SpringBootTest(classes = {MongoDBConfiguration.class})
+@EnableConfigurationProperties
+@EnableAutoConfiguration
+@RunWith(SpringJUnit4ClassRunner.class)
+public class CombinedSearchTest extends TicketTest {
+
+  private MovieDao dao;
+  @Autowired MongoClient mongoClient;
+
+  @Value("${spring.mongodb.database}")
+  String databaseName;
+
+  @Before
+  public void setUp() {
+    this.dao = new MovieDao(mongoClient, databaseName);
+  }
+
+  @Test
+  public void testCastAndGenre() {
+    MovieSearchCriteria criteria = new MovieSearchCriteria();
+    criteria.setCast(Collections.singletonList("Tom Hanks"));
+    criteria.setGenres(Collections.singletonList("Comedy"));
+
+    List<Document> movies = dao.searchMovies(criteria, 100, 0);
+    Assert.assertFalse("Tom Hanks starred in comedies", movies.isEmpty());
+    for (Document movie : movies) {
+      Assert.assertTrue(
+          "Every movie should match the cast filter",
+          ((List) movie.get("cast")).contains("Tom Hanks"));
+      Assert.assertTrue(
+          "Every movie should match the genre filter",
+          ((List) movie.get("genres")).contains("Comedy"));
+    }
+
+    Assert.assertEquals(
+        "Search count should match the returned movies",
+        movies.size(),
+        dao.getSearchCount(criteria));
+    Assert.assertTrue(
+        "Combined search must return fewer movies than the cast search alone",
+        dao.getSearchCount(criteria) < dao.getCastSearchCount("Tom Hanks"));
+  }
+
+  @Test
+  public void testTextAndGenre() {
+    MovieSearchCriteria criteria = new MovieSearchCriteria();
+    criteria.setText(Collections.singletonList("bank robbery"));
+    criteria.setGenres(Collections.singletonList("Comedy"));
+
+    List<Document> movies = dao.searchMovies(criteria, 20, 0);
+    Assert.assertEquals("Should return a full page of results", 20, movies.size());
+    for (Document movie : movies) {
+      Assert.assertTrue(
+          "Every movie should match the genre filter",
+          ((List) movie.get("genres")).contains("Comedy"));
+    }
+    Assert.assertTrue(
+        "Combined search must return fewer movies than the text search alone",
+        dao.getSearchCount(criteria) < dao.getTextSearchCount("bank robbery"));
+  }
+}
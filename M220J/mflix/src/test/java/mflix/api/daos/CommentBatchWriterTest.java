@@ -0,0 +1,123 @@
+package mflix.api.daos;
+
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import mflix.api.models.Comment;
+import mflix.config.MongoDBConfiguration;
+import org.bson.Document;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+@SpringBootTest(classes = {MongoDBConfiguration.class})
+@EnableConfigurationProperties
+@EnableAutoConfiguration
+@RunWith(SpringJUnit4ClassRunner.class)
+public class CommentBatchWriterTest extends TicketTest {
+
+  private static final String EMAIL = "batch@writer.io";
+
+  @Autowired MongoClient mongoClient;
+
+  @Value("${spring.mongodb.database}")
+  String databaseName;
+
+  private CommentBatchWriter writer;
+
+  private CommentDao dao;
+
+  @Before
+  public void setUp() {
+    writer = new CommentBatchWriter(mongoClient, databaseName, true, 5, 64);
+    writer.start();
+    dao = new CommentDao(mongoClient, databaseName);
+    dao.setBatchWriter(writer);
+    commentsCollection().deleteMany(Filters.eq("email", EMAIL));
+  }
+
+  @After
+  public void tearDown() {
+    writer.stop();
+    commentsCollection().deleteMany(Filters.eq("email", EMAIL));
+  }
+
+  private MongoCollection<Document> commentsCollection() {
+    return mongoClient.getDatabase(databaseName).getCollection(CommentDao.COMMENT_COLLECTION);
+  }
+
+  private Comment fakeComment() {
+    Comment comment = new Comment();
+    comment.setId(dao.generateObjectId().toHexString());
+    comment.setEmail(EMAIL);
+    comment.setName("batch writer");
+    comment.setText(randomText(20));
+    comment.setDate(new Date());
+    comment.setMovieId("573a1394f29313caabce0899");
+    return comment;
+  }
+
+  @Test
+  public void testConcurrentCommentsAreAllWritten() {
+    List<CompletableFuture<Comment>> added = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      added.add(CompletableFuture.supplyAsync(() -> dao.addComment(fakeComment())));
+    }
+    for (CompletableFuture<Comment> comment : added) {
+      Assert.assertNotNull("Every comment should be acknowledged", comment.join());
+    }
+
+    Assert.assertEquals(
+        "Every acknowledged comment should be stored",
+        200,
+        commentsCollection().countDocuments(Filters.eq("email", EMAIL)));
+  }
+
+  @Test
+  public void testFailedCommentDoesNotFailItsBatch() {
+    Comment stored = fakeComment();
+    Assert.assertNotNull(dao.addComment(stored));
+
+    Comment duplicate = fakeComment();
+    duplicate.setId(stored.getId());
+    CompletableFuture<Comment> failed = writer.insert(duplicate);
+    CompletableFuture<Comment> written = writer.insert(fakeComment());
+
+    Assert.assertNotNull("Other comments of the batch should be written", written.join());
+    try {
+      failed.join();
+      Assert.fail("A duplicate comment should fail");
+    } catch (CompletionException e) {
+      Assert.assertTrue(
+          "The duplicate comment should fail with its own write error",
+          e.getCause() instanceof MongoWriteException);
+    }
+  }
+
+  @Test
+  public void testStoppedWriterRefusesComments() {
+    writer.stop();
+
+    Assert.assertTrue(
+        "Comments cannot be queued once the writer is stopped",
+        writer.insert(fakeComment()).isCompletedExceptionally());
+    Assert.assertNotNull(
+        "CommentDao should insert directly when the writer is stopped",
+        dao.addComment(fakeComment()));
+  }
+}
@@ -0,0 +1,115 @@
+package mflix.api.daos;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import mflix.api.models.Comment;
+import mflix.config.MongoDBConfiguration;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.Date;
+
+@SpringBootTest(classes = {MongoDBConfiguration.class})
+@EnableConfigurationProperties
+@EnableAutoConfiguration
+@RunWith(SpringJUnit4ClassRunner.class)
+public class CommentCountTest extends TicketTest {
+
+  private static final String EMAIL = "counter@comments.io";
+
+  private static final ObjectId MOVIE_ID = new ObjectId("573a1394f29313caabce0899");
+
+  @Autowired MongoClient mongoClient;
+
+  @Value("${spring.mongodb.database}")
+  String databaseName;
+
+  private CommentDao dao;
+
+  @Before
+  public void setUp() {
+    dao = new CommentDao(mongoClient, databaseName);
+    collection(CommentDao.COMMENT_COLLECTION).deleteMany(Filters.eq("email", EMAIL));
+    reconcile();
+  }
+
+  @After
+  public void tearDown() {
+    collection(CommentDao.COMMENT_COLLECTION).deleteMany(Filters.eq("email", EMAIL));
+    reconcile();
+  }
+
+  /** Runs the reconciler twice, since a mismatch is only repaired once seen by two runs. */
+  private void reconcile() {
+    CommentCountReconciler reconciler =
+        new CommentCountReconciler(mongoClient, databaseName, 0, 2, "flat");
+    reconciler.reconcile();
+    reconciler.reconcile();
+  }
+
+  private MongoCollection<Document> collection(String name) {
+    return mongoClient.getDatabase(databaseName).getCollection(name);
+  }
+
+  private int storedCount() {
+    return collection(MovieDao.MOVIES_COLLECTION)
+        .find(Filters.eq("_id", MOVIE_ID))
+        .first()
+        .getInteger(CommentDao.COMMENTS_COUNT_FIELD);
+  }
+
+  private long actualCount() {
+    return collection(CommentDao.COMMENT_COLLECTION)
+        .countDocuments(Filters.eq("movie_id", MOVIE_ID));
+  }
+
+  private Comment fakeComment() {
+    Comment comment = new Comment();
+    comment.setOid(new ObjectId());
+    comment.setEmail(EMAIL);
+    comment.setName("comment counter");
+    comment.setText(randomText(20));
+    comment.setDate(new Date());
+    comment.setMovieObjectId(MOVIE_ID);
+    return comment;
+  }
+
+  @Test
+  public void testCommentWritesMaintainTheCounter() {
+    Comment comment = fakeComment();
+    Assert.assertNotNull(dao.addComment(comment));
+    Assert.assertEquals(
+        "Adding a comment should increment the movie counter", actualCount(), storedCount());
+
+    Assert.assertTrue(dao.deleteComment(comment.getId(), EMAIL));
+    Assert.assertEquals(
+        "Deleting a comment should decrement the movie counter", actualCount(), storedCount());
+  }
+
+  @Test
+  public void testReconcileRepairsDrift() {
+    collection(MovieDao.MOVIES_COLLECTION)
+        .updateOne(Filters.eq("_id", MOVIE_ID), Updates.inc(CommentDao.COMMENTS_COUNT_FIELD, 7));
+
+    CommentCountReconciler reconciler =
+        new CommentCountReconciler(mongoClient, databaseName, 0, 2, "flat");
+    Assert.assertEquals(
+        "A mismatch seen once should not be repaired", 0, reconciler.reconcile());
+    Assert.assertEquals("Only the drifted movie should be repaired", 1, reconciler.reconcile());
+    Assert.assertEquals(
+        "The counter should match the comments of the movie", actualCount(), storedCount());
+  }
+}
@@ -0,0 +1,109 @@
+package mflix.api.daos;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import mflix.api.models.Critic;
+import mflix.api.models.MovieCommentCount;
+import mflix.config.MongoDBConfiguration;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@SpringBootTest(classes = {MongoDBConfiguration.class})
+@EnableConfigurationProperties
+@EnableAutoConfiguration
+@RunWith(SpringJUnit4ClassRunner.class)
+public class CommentRollupTest extends TicketTest {
+
+  private static final String EMAIL = "rollup@comments.io";
+
+  @Autowired MongoClient mongoClient;
+
+  @Value("${spring.mongodb.database}")
+  String databaseName;
+
+  private CommentRollup rollup;
+
+  private ObjectId movieId;
+
+  @Before
+  public void setUp() {
+    rollup = new CommentRollup(mongoClient, databaseName, false, 15, 2, 24, "flat");
+    movieId = new ObjectId();
+    long now = System.currentTimeMillis();
+    for (long daysAgo : new long[] {0, 0, 3}) {
+      commentsCollection()
+          .insertOne(
+              new Document("movie_id", movieId)
+                  .append("email", EMAIL)
+                  .append("name", "rollup")
+                  .append("text", randomText(20))
+                  .append("date", new Date(now - TimeUnit.DAYS.toMillis(daysAgo))));
+    }
+    rollup.roll(CommentRollup.Window.WEEK.since(now));
+  }
+
+  @After
+  public void tearDown() {
+    commentsCollection().deleteMany(Filters.eq("movie_id", movieId));
+    mongoClient
+        .getDatabase(databaseName)
+        .getCollection(CommentRollup.ROLLUPS_COLLECTION)
+        .deleteMany(Filters.eq("movie_id", movieId));
+  }
+
+  private MongoCollection<Document> commentsCollection() {
+    return mongoClient.getDatabase(databaseName).getCollection(CommentDao.COMMENT_COLLECTION);
+  }
+
+  private int commenterCount(CommentRollup.Window window) {
+    List<Critic> commenters = rollup.getTopCommenters(window, 0, 10000);
+    for (Critic critic : commenters) {
+      if (EMAIL.equals(critic.getId())) {
+        return critic.getNumComments();
+      }
+    }
+    return 0;
+  }
+
+  @Test
+  public void testReportCountsCommentsOfTheWindow() {
+    Assert.assertEquals(2, commenterCount(CommentRollup.Window.DAY));
+    Assert.assertEquals(3, commenterCount(CommentRollup.Window.WEEK));
+  }
+
+  @Test
+  public void testRollupDropsDeletedComments() {
+    commentsCollection().deleteMany(Filters.eq("movie_id", movieId));
+    rollup.roll(CommentRollup.Window.WEEK.since(System.currentTimeMillis()));
+
+    Assert.assertEquals(0, commenterCount(CommentRollup.Window.WEEK));
+  }
+
+  @Test
+  public void testMoviesReportIsPaged() {
+    List<MovieCommentCount> firstPage = rollup.getTopMovies(CommentRollup.Window.WEEK, 0, 1);
+    List<MovieCommentCount> secondPage = rollup.getTopMovies(CommentRollup.Window.WEEK, 1, 1);
+
+    Assert.assertEquals(1, firstPage.size());
+    if (!secondPage.isEmpty()) {
+      Assert.assertNotEquals(firstPage.get(0).getMovieId(), secondPage.get(0).getMovieId());
+      Assert.assertTrue(firstPage.get(0).getCount() >= secondPage.get(0).getCount());
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package mflix.api.daos;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.model.Filters;
+import mflix.api.models.Comment;
+import mflix.api.models.Critic;
+import mflix.config.MongoDBConfiguration;
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.Date;
+import java.util.List;
+
+@SpringBootTest(classes = {MongoDBConfiguration.class})
+@EnableConfigurationProperties
+@EnableAutoConfiguration
+@RunWith(SpringJUnit4ClassRunner.class)
+public class CommenterLeaderboardTest extends TicketTest {
+
+  private static final String EMAIL = "leaderboard@comments.io";
+
+  @Autowired MongoClient mongoClient;
+
+  @Value("${spring.mongodb.database}")
+  String databaseName;
+
+  private CommenterLeaderboard leaderboard;
+
+  private CommentDao dao;
+
+  @Before
+  public void setUp() {
+    dao = new CommentDao(mongoClient, databaseName);
+    leaderboard = new CommenterLeaderboard(mongoClient, databaseName, true, 0, "flat");
+    leaderboard.rebuild();
+    dao.setLeaderboard(leaderboard);
+  }
+
+  @After
+  public void tearDown() {
+    mongoClient
+        .getDatabase(databaseName)
+        .getCollection(CommentDao.COMMENT_COLLECTION)
+        .deleteMany(Filters.eq("email", EMAIL));
+    leaderboard.rebuild();
+  }
+
+  @Test
+  public void testLeaderboardMatchesAggregation() {
+    List<Critic> expected = new CommentDao(mongoClient, databaseName).mostActiveCommenters();
+    List<Critic> actual = dao.mostActiveCommenters();
+
+    Assert.assertEquals("Should return 20 commenters", expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      Assert.assertEquals(
+          "Comment counts should match the aggregation",
+          expected.get(i).getNumComments(),
+          actual.get(i).getNumComments());
+    }
+    Assert.assertEquals(
+        "The top commenter should match the aggregation",
+        expected.get(0).getId(),
+        actual.get(0).getId());
+  }
+
+  @Test
+  public void testCommentWritesUpdateTheLeaderboard() {
+    Comment first = fakeComment();
+    Assert.assertNotNull(dao.addComment(first));
+    Assert.assertNotNull(dao.addComment(fakeComment()));
+    Assert.assertEquals("Added comments should be counted", 2, leaderboardCount());
+
+    Assert.assertTrue(dao.deleteComment(first.getId(), EMAIL));
+    Assert.assertEquals("Deleted comments should be discounted", 1, leaderboardCount());
+  }
+
+  private int leaderboardCount() {
+    return mongoClient
+        .getDatabase(databaseName)
+        .getCollection(CommenterLeaderboard.COMMENTERS_COLLECTION)
+        .find(Filters.eq("_id", EMAIL))
+        .first()
+        .getInteger("count");
+  }
+
+  private Comment fakeComment() {
+    Comment comment = new Comment();
+    comment.setOid(new ObjectId());
+    comment.setEmail(EMAIL);
+    comment.setName("leaderboard");
+    comment.setText(randomText(20));
+    comment.setDate(new Date());
+    comment.setMovieId("573a1394f29313caabce0899");
+    return comment;
+  }
+}
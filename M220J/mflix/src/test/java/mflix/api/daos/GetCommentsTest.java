@@ -1,6 +1,7 @@
 package mflix.api.daos;
 
 import com.mongodb.client.MongoClient;
+import mflix.api.models.Comment;
 import mflix.config.MongoDBConfiguration;
 import org.bson.Document;
 import org.bson.types.ObjectId;
@@ -88,6 +89,25 @@ public class GetCommentsTest extends TicketTest {
   }
 
 
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testMovieCommentsMatchEmbeddedComments() {
+    CommentDao commentDao = new CommentDao(mongoClient, databaseName);
+    List<Document> embedded = (List<Document>) dao.getMovie(existingMovieId).get("comments");
+
+    List<Comment> comments = commentDao.getMovieComments(existingMovieId, 1);
+    Assert.assertEquals("Should return up to `limit` comments", 1, comments.size());
+    Assert.assertEquals(
+        "Should return the most recent comment first, as getMovie() does",
+        embedded.get(0).getObjectId("_id").toHexString(),
+        comments.get(0).getId());
+
+    Assert.assertEquals(
+        "Should return every comment of the movie within the limit",
+        embedded.size(),
+        commentDao.getMovieComments(existingMovieId, embedded.size() + 1).size());
+  }
+
   @Test
   public void testInsertedComment(){
     Document movie = dao.getMovie(existingMovieId);
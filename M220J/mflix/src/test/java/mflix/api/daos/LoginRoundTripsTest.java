@@ -0,0 +1,163 @@
+package mflix.api.daos;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import mflix.api.models.User;
+import mflix.api.models.UserRegistry;
+import mflix.api.services.TokenAuthenticationService;
+import mflix.api.services.UserService;
+import mflix.config.MongoDBConfiguration;
+import org.bson.Document;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+@SpringBootTest(classes = {MongoDBConfiguration.class})
+@EnableConfigurationProperties
+@EnableAutoConfiguration
+@RunWith(SpringJUnit4ClassRunner.class)
+public class LoginRoundTripsTest extends TicketTest {
+
+  private static final String EMAIL = "round@trips.io";
+
+  private static final String PASSWORD = "round-trips-password";
+
+  @Value("${spring.mongodb.uri}")
+  String uri;
+
+  @Value("${spring.mongodb.database}")
+  String databaseName;
+
+  @Value("${jwtSecret}")
+  String jwtSecret;
+
+  private final List<String> commands = new CopyOnWriteArrayList<>();
+
+  private MongoClient mongoClient;
+
+  private UserService userService;
+
+  @Before
+  public void setUp() {
+    mongoClient =
+        MongoClients.create(
+            MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(uri))
+                .addCommandListener(
+                    new CommandListener() {
+                      @Override
+                      public void commandStarted(CommandStartedEvent event) {
+                        commands.add(event.getCommandName());
+                      }
+
+                      @Override
+                      public void commandSucceeded(CommandSucceededEvent event) {}
+
+                      @Override
+                      public void commandFailed(CommandFailedEvent event) {}
+                    })
+                .build());
+
+    BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder(4);
+    TokenAuthenticationService authService = new TokenAuthenticationService();
+    ReflectionTestUtils.setField(authService, "jwtSecret", jwtSecret);
+    ReflectionTestUtils.setField(authService, "jwtExpirationInMs", SessionStore.DEFAULT_TTL_MS);
+    userService = new UserService();
+    ReflectionTestUtils.setField(userService, "passwordEncoder", passwordEncoder);
+    ReflectionTestUtils.setField(userService, "authService", authService);
+    ReflectionTestUtils.setField(userService, "userDao", new UserDao(mongoClient, databaseName));
+
+    removeUser();
+    User user = new User();
+    user.setName("Round Trips");
+    user.setEmail(EMAIL);
+    user.setHashedpw(passwordEncoder.encode(PASSWORD));
+    new UserDao(mongoClient, databaseName).addUser(user);
+    commands.clear();
+  }
+
+  private void removeUser() {
+    mongoClient
+        .getDatabase(databaseName)
+        .getCollection("users")
+        .deleteMany(new Document("email", EMAIL));
+    mongoClient
+        .getDatabase(databaseName)
+        .getCollection(SessionStore.SESSIONS_COLLECTION)
+        .deleteMany(new Document("user_id", EMAIL));
+  }
+
+  @After
+  public void tearDown() {
+    removeUser();
+    mongoClient.close();
+  }
+
+  @Test
+  public void testLoginReadsUserOnceAndWritesSessionOnce() {
+    Map<String, String> results = new HashMap<>();
+    User user = userService.authenticate(EMAIL, PASSWORD, results);
+
+    Assert.assertNotNull(user);
+    Assert.assertEquals(EMAIL, user.getEmail());
+    Assert.assertNotNull(results.get("auth_token"));
+    Assert.assertEquals(Arrays.asList("find", "update"), commands);
+  }
+
+  @Test
+  public void testWrongPasswordDoesNotWriteSession() {
+    try {
+      userService.authenticate(EMAIL, "wrong-password", new HashMap<>());
+      Assert.fail("A wrong password should not authenticate");
+    } catch (BadCredentialsException ex) {
+      Assert.assertEquals(Arrays.asList("find"), commands);
+    }
+  }
+
+  @Test
+  public void testRegistrationDoesNotReadUser() {
+    removeUser();
+    commands.clear();
+    UserRegistry register = new UserRegistry();
+    register.setName("Round Trips");
+    register.setEmail(EMAIL);
+    register.setPassword(PASSWORD);
+
+    Map<String, String> results = new HashMap<>();
+    User user = userService.registerUser(register, results);
+
+    Assert.assertNotNull(user);
+    Assert.assertNotNull(results.get("auth_token"));
+    Assert.assertEquals(Arrays.asList("insert", "update"), commands);
+  }
+
+  @Test
+  public void testDeleteChecksStoredPassword() {
+    Map<String, String> results = new HashMap<>();
+    Assert.assertFalse(userService.deleteUser(EMAIL, "wrong-password", results));
+    Assert.assertEquals("passwords do not match", results.get("msg"));
+    Assert.assertTrue(userService.deleteUser(EMAIL, PASSWORD, results));
+  }
+}
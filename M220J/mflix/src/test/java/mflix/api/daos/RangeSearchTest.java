@@ -0,0 +1,129 @@
+package mflix.api.daos;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoDatabase;
+import mflix.api.models.MovieSearchCriteria;
+import mflix.config.MongoDBConfiguration;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@SpringBootTest(classes = {MongoDBConfiguration.class})
+@EnableConfigurationProperties
+@EnableAutoConfiguration
+@RunWith(SpringJUnit4ClassRunner.class)
+public class RangeSearchTest extends TicketTest {
+
+  private MovieDao dao;
+  private MongoDatabase db;
+  @Autowired MongoClient mongoClient;
+
+  @Value("${spring.mongodb.database}")
+  String databaseName;
+
+  @Before
+  public void setUp() {
+    this.dao = new MovieDao(mongoClient, databaseName);
+    this.db = mongoClient.getDatabase(databaseName);
+  }
+
+  private MovieSearchCriteria dramaCriteria() {
+    MovieSearchCriteria criteria = new MovieSearchCriteria();
+    criteria.setGenres(Collections.singletonList("Drama"));
+    criteria.setMinRating(7.0);
+    criteria.setMaxRating(8.5);
+    criteria.setMinMetacritic(60);
+    criteria.setMinYear(1990);
+    criteria.setMaxYear(2010);
+    return criteria;
+  }
+
+  private BsonDocument toBson(Bson bson) {
+    return bson.toBsonDocument(BsonDocument.class, db.getCodecRegistry());
+  }
+
+  private List<String> winningPlanStages(MovieSearchCriteria criteria, MovieDao.IndexedSort sort) {
+    Document find =
+        new Document("find", MovieDao.MOVIES_COLLECTION)
+            .append("filter", toBson(dao.buildRangeFilter(criteria)))
+            .append("sort", toBson(sort.getSort()))
+            .append("hint", toBson(sort.getIndex()))
+            .append("limit", 20);
+    Document explain =
+        db.runCommand(new Document("explain", find).append("verbosity", "queryPlanner"));
+    Document plan = (Document) ((Document) explain.get("queryPlanner")).get("winningPlan");
+    List<String> stages = new ArrayList<>();
+    collectStages(plan, stages);
+    return stages;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void collectStages(Document stage, List<String> stages) {
+    stages.add(stage.getString("stage"));
+    if (stage.get("inputStage") != null) {
+      collectStages((Document) stage.get("inputStage"), stages);
+    }
+    if (stage.get("inputStages") != null) {
+      for (Document input : (List<Document>) stage.get("inputStages")) {
+        collectStages(input, stages);
+      }
+    }
+  }
+
+  @Test
+  public void testRangeFilters() {
+    MovieSearchCriteria criteria = dramaCriteria();
+    List<Document> movies =
+        dao.getMoviesByRange(criteria, MovieDao.IndexedSort.IMDB_RATING_DESC, 20, 0);
+    Assert.assertEquals("Should return a full page of results", 20, movies.size());
+
+    double previous = Double.MAX_VALUE;
+    for (Document movie : movies) {
+      double rating = ((Number) ((Document) movie.get("imdb")).get("rating")).doubleValue();
+      Assert.assertTrue("Rating should be within range", rating >= 7.0 && rating <= 8.5);
+      Assert.assertTrue("Movies should be sorted by rating", rating <= previous);
+      Assert.assertTrue(
+          "Metacritic should be within range", movie.getInteger("metacritic") >= 60);
+      int year = movie.getInteger("year");
+      Assert.assertTrue("Year should be within range", year >= 1990 && year <= 2010);
+      previous = rating;
+    }
+
+    Assert.assertTrue(
+        "Range count should be smaller than the genre count",
+        dao.getRangeSearchCount(criteria) < dao.getGenresSearchCount("Drama"));
+  }
+
+  @Test
+  public void testRangeSearchIsIndexBacked() {
+    for (MovieDao.IndexedSort sort :
+        new MovieDao.IndexedSort[] {
+          MovieDao.IndexedSort.IMDB_RATING_ASC, MovieDao.IndexedSort.IMDB_RATING_DESC
+        }) {
+      List<String> stages = winningPlanStages(dramaCriteria(), sort);
+      Assert.assertTrue(
+          sort + " should scan the compound index: " + stages, stages.contains("IXSCAN"));
+      Assert.assertFalse(
+          sort + " should not need a blocking sort: " + stages, stages.contains("SORT"));
+    }
+  }
+
+  @Test(expected = IncorrectDaoOperation.class)
+  public void testRangeSearchRequiresGenre() {
+    dao.getMoviesByRange(new MovieSearchCriteria(), MovieDao.IndexedSort.IMDB_RATING_DESC, 20, 0);
+  }
+}
@@ -0,0 +1,87 @@
+package mflix.api.daos;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import mflix.api.models.Session;
+import mflix.config.MongoDBConfiguration;
+import org.bson.Document;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.Date;
+
+@SpringBootTest(classes = {MongoDBConfiguration.class})
+@EnableConfigurationProperties
+@EnableAutoConfiguration
+@RunWith(SpringJUnit4ClassRunner.class)
+public class SessionStoreTest extends TicketTest {
+
+  private static final String USER_ID = "session@store.io";
+
+  @Autowired MongoClient mongoClient;
+
+  @Value("${spring.mongodb.database}")
+  String databaseName;
+
+  private SessionStore store;
+
+  @Before
+  public void setUp() {
+    store = new SessionStore(mongoClient, databaseName, SessionStore.DEFAULT_TTL_MS);
+    store.createIndexes();
+    sessionsCollection().deleteMany(Filters.eq("user_id", USER_ID));
+  }
+
+  @After
+  public void tearDown() {
+    sessionsCollection().deleteMany(Filters.eq("user_id", USER_ID));
+  }
+
+  private MongoCollection<Document> sessionsCollection() {
+    return mongoClient.getDatabase(databaseName).getCollection(SessionStore.SESSIONS_COLLECTION);
+  }
+
+  @Test
+  public void testLoginsKeepOneSession() {
+    Assert.assertTrue(store.save(USER_ID, "first"));
+    Assert.assertTrue(store.save(USER_ID, "second"));
+
+    Assert.assertEquals(1, sessionsCollection().countDocuments(Filters.eq("user_id", USER_ID)));
+    Assert.assertEquals("second", store.get(USER_ID).getJwt());
+    Assert.assertNotNull(
+        "Sessions should expire with their token",
+        sessionsCollection().find(Filters.eq("user_id", USER_ID)).first().getDate("expires_at"));
+  }
+
+  @Test
+  public void testDeletedSessionIsNotReturned() {
+    store.save(USER_ID, "deleted");
+    Session session = store.get(USER_ID);
+    Assert.assertNotNull("The written session should be returned", session);
+    Assert.assertEquals("deleted", session.getJwt());
+
+    store.delete(USER_ID);
+    Assert.assertNull("A deleted session should be gone", store.get(USER_ID));
+  }
+
+  @Test
+  public void testExpiredSessionIsNotReturned() {
+    sessionsCollection()
+        .insertOne(
+            new Document("user_id", USER_ID)
+                .append("jwt", "expired")
+                .append("expires_at", new Date(System.currentTimeMillis() - 1000)));
+
+    Assert.assertNull(store.get(USER_ID));
+  }
+}
@@ -0,0 +1,128 @@
+package mflix.api.daos;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoDatabase;
+import mflix.api.models.MovieSearchCriteria;
+import mflix.config.MongoDBConfiguration;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@SpringBootTest(classes = {MongoDBConfiguration.class})
+@EnableConfigurationProperties
+@EnableAutoConfiguration
+@RunWith(SpringJUnit4ClassRunner.class)
+public class SortedSearchTest extends TicketTest {
+
+  private MovieDao dao;
+  private MongoDatabase db;
+  @Autowired MongoClient mongoClient;
+
+  @Value("${spring.mongodb.database}")
+  String databaseName;
+
+  @Before
+  public void setUp() {
+    this.dao = new MovieDao(mongoClient, databaseName);
+    this.db = mongoClient.getDatabase(databaseName);
+  }
+
+  private BsonDocument toBson(Bson bson) {
+    return bson.toBsonDocument(BsonDocument.class, db.getCodecRegistry());
+  }
+
+  private List<String> winningPlanStages(MovieSearchCriteria criteria, MovieDao.IndexedSort sort) {
+    Document find =
+        new Document("find", MovieDao.MOVIES_COLLECTION)
+            .append("filter", toBson(dao.buildSearchFilter(criteria)))
+            .append("sort", toBson(sort.getSort()))
+            .append("hint", toBson(sort.getIndex()))
+            .append("limit", 20);
+    Document explain =
+        db.runCommand(new Document("explain", find).append("verbosity", "queryPlanner"));
+    Document plan = (Document) ((Document) explain.get("queryPlanner")).get("winningPlan");
+    List<String> stages = new ArrayList<>();
+    collectStages(plan, stages);
+    return stages;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void collectStages(Document stage, List<String> stages) {
+    stages.add(stage.getString("stage"));
+    if (stage.get("inputStage") != null) {
+      collectStages((Document) stage.get("inputStage"), stages);
+    }
+    if (stage.get("inputStages") != null) {
+      for (Document input : (List<Document>) stage.get("inputStages")) {
+        collectStages(input, stages);
+      }
+    }
+  }
+
+  private MovieSearchCriteria castCriteria() {
+    MovieSearchCriteria criteria = new MovieSearchCriteria();
+    criteria.setCast(Collections.singletonList("Tom Hanks"));
+    return criteria;
+  }
+
+  @Test
+  public void testSortByViewerRating() {
+    List<Document> movies =
+        dao.searchMovies(castCriteria(), MovieDao.IndexedSort.VIEWER_RATING, 20, 0);
+    Assert.assertEquals("Should return a full page of results", 20, movies.size());
+
+    double previous = Double.MAX_VALUE;
+    for (Document movie : movies) {
+      Document viewer = (Document) ((Document) movie.get("tomatoes")).get("viewer");
+      double rating = ((Number) viewer.get("rating")).doubleValue();
+      Assert.assertTrue("Movies should be sorted by viewer rating", rating <= previous);
+      previous = rating;
+    }
+  }
+
+  @Test
+  public void testSortsAreIndexBacked() {
+    MovieSearchCriteria castAndGenre = castCriteria();
+    castAndGenre.setGenres(Collections.singletonList("Comedy"));
+
+    for (MovieDao.IndexedSort sort : MovieDao.IndexedSort.values()) {
+      MovieSearchCriteria criteria = sort.canServe(castCriteria()) ? castCriteria() : castAndGenre;
+      List<String> stages = winningPlanStages(criteria, sort);
+      Assert.assertTrue(sort + " should scan its index: " + stages, stages.contains("IXSCAN"));
+      Assert.assertFalse(
+          sort + " should not need a blocking sort: " + stages, stages.contains("SORT"));
+    }
+  }
+
+  @Test
+  public void testUnservedSortsAreRejected() {
+    MovieSearchCriteria text = new MovieSearchCriteria();
+    text.setText(Collections.singletonList("bank robbery"));
+    Assert.assertFalse(
+        "Text searches are sorted by score", MovieDao.IndexedSort.VIEWER_RATING.canServe(text));
+    Assert.assertFalse(
+        "imdb.rating sorts need a genre filter",
+        MovieDao.IndexedSort.IMDB_RATING_DESC.canServe(castCriteria()));
+    Assert.assertNull(
+        "Unknown sorts should not be resolved", MovieDao.IndexedSort.fromParam("runtime"));
+  }
+
+  @Test(expected = IncorrectDaoOperation.class)
+  public void testUnservedSortThrows() {
+    dao.searchMovies(castCriteria(), MovieDao.IndexedSort.IMDB_RATING_ASC, 20, 0);
+  }
+}
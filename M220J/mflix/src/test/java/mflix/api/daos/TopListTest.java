@@ -0,0 +1,66 @@
+package mflix.api.daos;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.model.Sorts;
+import mflix.config.MongoDBConfiguration;
+import org.bson.Document;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@SpringBootTest(classes = {MongoDBConfiguration.class})
+@EnableConfigurationProperties
+@EnableAutoConfiguration
+@RunWith(SpringJUnit4ClassRunner.class)
+public class TopListTest extends TicketTest {
+
+  private MovieDao dao;
+  private MovieTopList topList;
+  @Autowired MongoClient mongoClient;
+
+  @Value("${spring.mongodb.database}")
+  String databaseName;
+
+  @Before
+  public void setUp() {
+    this.dao = new MovieDao(mongoClient, databaseName);
+    MovieChangeWatcher watcher = new MovieChangeWatcher(mongoClient, databaseName);
+    this.topList = new MovieTopList(mongoClient, databaseName, watcher, true, 5, 20);
+    // build the list without waiting on the change stream
+    this.topList.onReset();
+  }
+
+  private List<Integer> numReviews(List<Document> movies) {
+    return movies.stream().map(MovieDao::numReviews).collect(Collectors.toList());
+  }
+
+  @Test
+  public void testTopListMatchesDefaultSort() {
+    for (int page = 0; page < 5; page++) {
+      List<Document> expected =
+          dao.getMovies(20, page * 20, Sorts.descending(MovieDao.DEFAULT_SORT_KEY));
+      Assert.assertEquals(
+          "Top list page " + page + " should follow the numReviews descending order",
+          numReviews(expected),
+          numReviews(topList.getMovies(20, page * 20)));
+    }
+  }
+
+  @Test
+  public void testTopListCount() {
+    Assert.assertEquals(
+        "Top list should keep the collection count",
+        dao.getMoviesCount(),
+        topList.getMoviesCount());
+  }
+}
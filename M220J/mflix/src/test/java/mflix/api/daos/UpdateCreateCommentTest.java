@@ -1,5 +1,6 @@
 package mflix.api.daos;
 
+import com.mongodb.bulk.BulkWriteResult;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.Filters;
@@ -19,6 +20,7 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import java.util.Collections;
 import java.util.Date;
 
 @SpringBootTest(classes = {MongoDBConfiguration.class})
@@ -115,6 +117,86 @@ public class UpdateCreateCommentTest extends TicketTest {
         !dao.updateComment(fakeComment.getId(), newCommentText, notValidEmail));
   }
 
+  @Test
+  public void testFindAndUpdateTellsMissingFromNotOwned() {
+    Comment fakeComment = fakeCommentWithId();
+    dao.addComment(fakeComment);
+    String newCommentText = randomText(20);
+
+    Assert.assertNull(
+        "A missing comment should return no previous comment",
+        dao.findAndUpdateComment(
+            dao.generateObjectId().toHexString(), newCommentText, validEmail, new Date()));
+
+    Comment notOwned =
+        dao.findAndUpdateComment(fakeCommentId, newCommentText, notValidEmail, new Date());
+    Assert.assertEquals(
+        "The previous comment should tell who owns it", validEmail, notOwned.getEmail());
+    Assert.assertEquals(
+        "Comments of other users should not be updated",
+        fakeComment.getText(),
+        dao.getComment(fakeCommentId).getText());
+
+    Date editedAt = new Date();
+    Comment previous =
+        dao.findAndUpdateComment(fakeCommentId, "$" + newCommentText, validEmail, editedAt);
+    Assert.assertEquals(
+        "The comment should be returned as it was before the update",
+        fakeComment.getText(),
+        previous.getText());
+    Comment updated = dao.getComment(fakeCommentId);
+    Assert.assertEquals("$" + newCommentText, updated.getText());
+    Assert.assertEquals(
+        "An edit should keep the comment date", previous.getDate(), updated.getDate());
+    Assert.assertEquals("The edit time should be the given one", editedAt, updated.getEditedAt());
+  }
+
+  private int commentsVersion(Comment comment) {
+    Document movie =
+        mongoClient
+            .getDatabase(databaseName)
+            .getCollection(MovieDao.MOVIES_COLLECTION)
+            .find(Filters.eq("_id", comment.getMovieObjectId()))
+            .first();
+    return movie.getInteger(CommentDao.COMMENTS_VERSION_FIELD, 0);
+  }
+
+  @Test
+  public void testEditsBumpMovieCommentsVersion() {
+    Comment fakeComment = fakeCommentWithId();
+    dao.addComment(fakeComment);
+    int version = commentsVersion(fakeComment);
+
+    dao.findAndUpdateComment(fakeCommentId, randomText(20), notValidEmail, new Date());
+    Assert.assertEquals(
+        "Rejected edits should not change the movie", version, commentsVersion(fakeComment));
+
+    dao.findAndUpdateComment(fakeCommentId, randomText(20), validEmail, new Date());
+    Assert.assertEquals(
+        "Edits should tell other instances that the movie page changed",
+        version + 1,
+        commentsVersion(fakeComment));
+  }
+
+  @Test
+  public void testModerateComments() {
+    Comment updated = fakeCommentWithId();
+    dao.addComment(updated);
+    Comment deleted = fakeCommentNoId();
+    deleted.setId(dao.generateObjectId().toHexString());
+    dao.addComment(deleted);
+
+    BulkWriteResult result =
+        dao.moderateComments(
+            Collections.singletonMap(updated.getId(), "[moderated]"),
+            Collections.singletonList(deleted.getId()));
+
+    Assert.assertEquals(1, result.getMatchedCount());
+    Assert.assertEquals(1, result.getDeletedCount());
+    Assert.assertEquals("[moderated]", dao.getComment(updated.getId()).getText());
+    Assert.assertNull(dao.getComment(deleted.getId()));
+  }
+
   @Test(expected = IncorrectDaoOperation.class)
   public void testUserAddCommentWithNoID() {
     Comment actual = fakeCommentNoId();
@@ -0,0 +1,82 @@
+package mflix.api.security;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class BoundedPasswordEncoderTest {
+
+  private final CountDownLatch started = new CountDownLatch(1);
+
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  private final ExecutorService callers = Executors.newFixedThreadPool(2);
+
+  /** Encoder blocking on `release` the first hash it runs. */
+  private final PasswordEncoder blocking =
+      new PasswordEncoder() {
+        @Override
+        public String encode(CharSequence rawPassword) {
+          started.countDown();
+          try {
+            release.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+          }
+          return "hashed:" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+          return encodedPassword.equals("hashed:" + rawPassword);
+        }
+      };
+
+  @After
+  public void tearDown() {
+    release.countDown();
+    callers.shutdownNow();
+  }
+
+  @Test
+  public void testHashesAreDelegated() {
+    release.countDown();
+    BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(blocking, 1, 1);
+
+    Assert.assertEquals("hashed:secret", encoder.encode("secret"));
+    Assert.assertTrue(encoder.matches("secret", "hashed:secret"));
+    Assert.assertFalse(encoder.matches("other", "hashed:secret"));
+    Assert.assertEquals(Long.valueOf(3), encoder.getMetrics().get("hashes"));
+    encoder.shutdown();
+  }
+
+  @Test
+  public void testHashIsRejectedWhenSaturated() throws Exception {
+    BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(blocking, 1, 1);
+    Future<String> running = callers.submit(() -> encoder.encode("running"));
+    Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+    Future<String> queued = callers.submit(() -> encoder.encode("queued"));
+    while (encoder.getMetrics().get("queue_depth") == 0) {
+      Thread.sleep(1);
+    }
+
+    try {
+      encoder.encode("rejected");
+      Assert.fail("A hash should be rejected once the queue is full");
+    } catch (PasswordHashingRejected ex) {
+      Assert.assertEquals(Long.valueOf(1), encoder.getMetrics().get("rejected"));
+    }
+
+    release.countDown();
+    Assert.assertEquals("hashed:running", running.get(10, TimeUnit.SECONDS));
+    Assert.assertEquals("hashed:queued", queued.get(10, TimeUnit.SECONDS));
+    encoder.shutdown();
+  }
+}
@@ -0,0 +1,120 @@
+package mflix.benchmarks;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.model.Filters;
+import mflix.api.daos.CommentBatchWriter;
+import mflix.api.daos.CommentDao;
+import mflix.api.models.Comment;
+import mflix.config.MongoDBConfiguration;
+import org.bson.types.ObjectId;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open loop load of comment posts at 100, 1k and 10k comments per second, through
+ * CommentDao.addComment with one insert per comment and with the CommentBatchWriter. Latency is
+ * measured from the time each post was scheduled, so that a saturated writer shows up as queueing
+ * delay rather than as a lower request rate.
+ *
+ * <p>Needs a replica set: run {@link #main} with the test classpath and
+ * `-Dmflix.uri=mongodb://...`. Inserted comments are removed at the end of every run.
+ */
+public class CommentInsertLoadBenchmark {
+
+  private static final int[] RATES = {100, 1000, 10000};
+
+  private static final int SECONDS = 10;
+
+  private static final int CLIENTS = 512;
+
+  private static final String EMAIL = "load@benchmark.io";
+
+  public static void main(String[] args) throws InterruptedException {
+    String uri = System.getProperty("mflix.uri", "mongodb://localhost:27017/?replicaSet=rs0");
+    String database = System.getProperty("mflix.database", "mflix");
+    MongoClient mongoClient = new MongoDBConfiguration().mongoClient(uri);
+
+    CommentDao direct = new CommentDao(mongoClient, database);
+    CommentBatchWriter writer = new CommentBatchWriter(mongoClient, database, true, 2, 256);
+    writer.start();
+    CommentDao batched = new CommentDao(mongoClient, database);
+    batched.setBatchWriter(writer);
+
+    System.out.printf(
+        "%-8s %8s %12s %10s %10s %10s %8s%n",
+        "mode", "rate", "achieved/s", "p50 ms", "p99 ms", "max ms", "errors");
+    for (int rate : RATES) {
+      run("insert", rate, direct, mongoClient, database);
+      run("batched", rate, batched, mongoClient, database);
+    }
+    writer.stop();
+    mongoClient.close();
+  }
+
+  private static void run(
+      String mode, int rate, CommentDao dao, MongoClient mongoClient, String database)
+      throws InterruptedException {
+    int total = rate * SECONDS;
+    long[] latencies = new long[total];
+    AtomicInteger errors = new AtomicInteger();
+    ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+    long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+
+    long start = System.nanoTime();
+    for (int i = 0; i < total; i++) {
+      long scheduled = start + i * interval;
+      long wait = scheduled - System.nanoTime();
+      if (wait > 0) {
+        LockSupport.parkNanos(wait);
+      }
+      int index = i;
+      clients.execute(
+          () -> {
+            if (dao.addComment(comment()) == null) {
+              errors.incrementAndGet();
+            }
+            latencies[index] = System.nanoTime() - scheduled;
+          });
+    }
+    clients.shutdown();
+    clients.awaitTermination(5, TimeUnit.MINUTES);
+    long elapsed = System.nanoTime() - start;
+
+    Arrays.sort(latencies);
+    System.out.printf(
+        "%-8s %8d %12.0f %10.2f %10.2f %10.2f %8d%n",
+        mode,
+        rate,
+        total / (elapsed / 1e9),
+        millis(latencies[total / 2]),
+        millis(latencies[(int) (total * 0.99)]),
+        millis(latencies[total - 1]),
+        errors.get());
+
+    mongoClient
+        .getDatabase(database)
+        .getCollection(CommentDao.COMMENT_COLLECTION)
+        .deleteMany(Filters.eq("email", EMAIL));
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1e6;
+  }
+
+  private static Comment comment() {
+    Comment comment = new Comment();
+    comment.setId(new ObjectId().toHexString());
+    comment.setEmail(EMAIL);
+    comment.setName("load benchmark");
+    comment.setText("Posted by the comment insert load benchmark.");
+    comment.setDate(new Date());
+    comment.setMovieId("573a1394f29313caabce0899");
+    return comment;
+  }
+}
@@ -0,0 +1,114 @@
+package mflix.benchmarks;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import mflix.api.daos.BucketedCommentDao;
+import mflix.api.daos.CommentDao;
+import mflix.api.daos.CommentStorage;
+import mflix.api.daos.MovieDao;
+import mflix.config.MongoDBConfiguration;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Movie page latency and working set of the flat and bucketed comment layouts. The movie page is
+ * MovieDao.getMovie, run for the movies with the most comments. The working set is reported as the
+ * data and index sizes of each collection, and as the index keys and documents a movie page reads.
+ *
+ * <p>Run {@link #main} with the test classpath and `-Dmflix.uri=mongodb://...` once
+ * CommentBucketMigrator has filled `comment_buckets` from `comments`.
+ */
+public class CommentLayoutBenchmark {
+
+  private static final int MOVIES = 50;
+
+  private static final int WARMUP_ROUNDS = 5;
+
+  private static final int ROUNDS = 20;
+
+  public static void main(String[] args) {
+    String uri = System.getProperty("mflix.uri", "mongodb://localhost:27017");
+    String database = System.getProperty("mflix.database", "mflix");
+    MongoClient mongoClient = new MongoDBConfiguration().mongoClient(uri);
+    MongoDatabase db = mongoClient.getDatabase(database);
+
+    List<String> movieIds = new ArrayList<>();
+    for (Document movie :
+        db.getCollection(CommentDao.COMMENT_COLLECTION)
+            .aggregate(
+                Arrays.asList(Aggregates.sortByCount("$movie_id"), Aggregates.limit(MOVIES)))) {
+      movieIds.add(movie.getObjectId("_id").toHexString());
+    }
+
+    System.out.printf(
+        "%-9s %8s %8s %12s %12s %12s %10s %10s%n",
+        "layout", "p50 ms", "p99 ms", "data MB", "storage MB", "index MB", "keys/page", "docs/page");
+    for (CommentStorage storage : CommentStorage.values()) {
+      MovieDao movieDao = new MovieDao(mongoClient, database);
+      movieDao.setCommentStorage(storage.name());
+      for (int i = 0; i < WARMUP_ROUNDS; i++) {
+        movieIds.forEach(movieDao::getMovie);
+      }
+      long[] latencies = new long[ROUNDS * movieIds.size()];
+      int n = 0;
+      for (int i = 0; i < ROUNDS; i++) {
+        for (String movieId : movieIds) {
+          long start = System.nanoTime();
+          movieDao.getMovie(movieId);
+          latencies[n++] = System.nanoTime() - start;
+        }
+      }
+      Arrays.sort(latencies);
+
+      Document stats = db.runCommand(new Document("collStats", storage.getCollection()));
+      long[] examined = examined(db, storage, movieIds);
+      System.out.printf(
+          "%-9s %8.2f %8.2f %12.1f %12.1f %12.1f %10.1f %10.1f%n",
+          storage.name().toLowerCase(),
+          latencies[n / 2] / 1e6,
+          latencies[(int) (n * 0.99)] / 1e6,
+          megabytes(stats, "size"),
+          megabytes(stats, "storageSize"),
+          megabytes(stats, "totalIndexSize"),
+          examined[0] / (double) movieIds.size(),
+          examined[1] / (double) movieIds.size());
+    }
+    mongoClient.close();
+  }
+
+  private static double megabytes(Document stats, String field) {
+    return ((Number) stats.get(field)).doubleValue() / (1024 * 1024);
+  }
+
+  /** Index keys and documents examined by the comments query of each movie page. */
+  private static long[] examined(MongoDatabase db, CommentStorage storage, List<String> movieIds) {
+    long[] examined = new long[2];
+    Bson sort =
+        storage == CommentStorage.FLAT ? Sorts.descending("date") : Sorts.descending("n");
+    String collection =
+        storage == CommentStorage.FLAT
+            ? CommentDao.COMMENT_COLLECTION
+            : BucketedCommentDao.BUCKETS_COLLECTION;
+    for (String movieId : movieIds) {
+      Document find =
+          new Document("find", collection)
+              .append("filter", Filters.eq("movie_id", new ObjectId(movieId)))
+              .append("sort", sort);
+      Document explain =
+          db.runCommand(
+              new Document("explain", find).append("verbosity", "executionStats"));
+      Document executionStats = (Document) explain.get("executionStats");
+      examined[0] += ((Number) executionStats.get("totalKeysExamined")).longValue();
+      examined[1] += ((Number) executionStats.get("totalDocsExamined")).longValue();
+    }
+    return examined;
+  }
+}
@@ -0,0 +1,103 @@
+package mflix.benchmarks;
+
+import mflix.api.cache.VerifiedTokenCache;
+import mflix.api.security.JWTAuthenticationFilter;
+import mflix.api.services.TokenAuthenticationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time spent by JWTAuthenticationFilter on a request, with and without the cache of verified
+ * tokens, over requests of `users` distinct tokens. Run {@link #main} with the test classpath once
+ * `mvn test-compile` has generated the benchmark classes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtFilterBenchmark {
+
+  @Param({"1", "1000"})
+  public int users;
+
+  private JWTAuthenticationFilter uncachedFilter;
+
+  private JWTAuthenticationFilter cachedFilter;
+
+  private String[] tokens;
+
+  private int next;
+
+  @Setup
+  public void setUp() {
+    TokenAuthenticationService uncached = authService();
+    TokenAuthenticationService cached = authService();
+    cached.setTokenCache(new VerifiedTokenCache(true, 10000));
+
+    uncachedFilter = new JWTAuthenticationFilter();
+    uncachedFilter.setAuthService(uncached);
+    cachedFilter = new JWTAuthenticationFilter();
+    cachedFilter.setAuthService(cached);
+
+    tokens = new String[users];
+    for (int i = 0; i < users; i++) {
+      tokens[i] = uncached.mintJWTHeader("user" + i + "@mflix.io");
+    }
+  }
+
+  private static TokenAuthenticationService authService() {
+    TokenAuthenticationService authService = new TokenAuthenticationService();
+    ReflectionTestUtils.setField(authService, "jwtSecret", "00102030405060708090");
+    ReflectionTestUtils.setField(authService, "jwtExpirationInMs", 604800000L);
+    return authService;
+  }
+
+  private MockHttpServletRequest request() {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/movies/");
+    request.addHeader("Authorization", tokens[next]);
+    next = (next + 1) % tokens.length;
+    return request;
+  }
+
+  @Benchmark
+  public MockHttpServletResponse uncached() throws IOException, ServletException {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    uncachedFilter.doFilter(request(), response, new MockFilterChain());
+    return response;
+  }
+
+  @Benchmark
+  public MockHttpServletResponse cached() throws IOException, ServletException {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    cachedFilter.doFilter(request(), response, new MockFilterChain());
+    return response;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(
+            new OptionsBuilder().include(JwtFilterBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
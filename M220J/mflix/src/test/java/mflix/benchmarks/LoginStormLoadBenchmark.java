@@ -0,0 +1,143 @@
+package mflix.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open loop load of catalog reads at a fixed rate against a running application, first alone and
+ * then during a login storm of closed loop clients logging in as fast as they can. With password
+ * hashing on its bounded executor, the catalog p99 should stay close to its baseline while the
+ * extra logins are answered with 429.
+ *
+ * <p>Start the application, then run {@link #main} with the test classpath and
+ * `-Dmflix.url=http://localhost:5000`. The benchmark registers its own user on the first run.
+ */
+public class LoginStormLoadBenchmark {
+
+  private static final int CATALOG_RATE = 200;
+
+  private static final int SECONDS = 20;
+
+  private static final int CLIENTS = 64;
+
+  private static final int LOGIN_CLIENTS = 128;
+
+  private static final String EMAIL = "storm@benchmark.io";
+
+  private static final String PASSWORD = "login-storm-password";
+
+  private static final String CREDENTIALS =
+      "{\"email\":\"" + EMAIL + "\",\"password\":\"" + PASSWORD + "\",\"name\":\"storm\"}";
+
+  public static void main(String[] args) throws Exception {
+    String url = System.getProperty("mflix.url", "http://localhost:5000");
+    // fails with 400 once the user exists, which is fine
+    request("POST", url + "/api/v1/user/register", CREDENTIALS);
+
+    System.out.printf(
+        "%-8s %10s %10s %10s %8s %10s %8s%n",
+        "phase", "p50 ms", "p99 ms", "max ms", "errors", "logins", "429");
+    run("baseline", url, 0);
+    run("storm", url, LOGIN_CLIENTS);
+  }
+
+  private static void run(String phase, String url, int loginClients) throws InterruptedException {
+    AtomicBoolean storming = new AtomicBoolean(true);
+    AtomicInteger logins = new AtomicInteger();
+    AtomicInteger throttled = new AtomicInteger();
+    ExecutorService storm = Executors.newFixedThreadPool(Math.max(1, loginClients));
+    for (int i = 0; i < loginClients; i++) {
+      storm.execute(
+          () -> {
+            while (storming.get()) {
+              int status = request("POST", url + "/api/v1/user/login", CREDENTIALS);
+              if (status == 200) {
+                logins.incrementAndGet();
+              } else if (status == 429) {
+                throttled.incrementAndGet();
+              }
+            }
+          });
+    }
+
+    int total = CATALOG_RATE * SECONDS;
+    long[] latencies = new long[total];
+    AtomicInteger errors = new AtomicInteger();
+    ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+    long interval = TimeUnit.SECONDS.toNanos(1) / CATALOG_RATE;
+    long start = System.nanoTime();
+    for (int i = 0; i < total; i++) {
+      long scheduled = start + i * interval;
+      long wait = scheduled - System.nanoTime();
+      if (wait > 0) {
+        LockSupport.parkNanos(wait);
+      }
+      int index = i;
+      clients.execute(
+          () -> {
+            if (request("GET", url + "/api/v1/movies/", null) != 200) {
+              errors.incrementAndGet();
+            }
+            latencies[index] = System.nanoTime() - scheduled;
+          });
+    }
+    clients.shutdown();
+    clients.awaitTermination(5, TimeUnit.MINUTES);
+    storming.set(false);
+    storm.shutdown();
+    storm.awaitTermination(1, TimeUnit.MINUTES);
+
+    Arrays.sort(latencies);
+    System.out.printf(
+        "%-8s %10.2f %10.2f %10.2f %8d %10d %8d%n",
+        phase,
+        millis(latencies[total / 2]),
+        millis(latencies[(int) (total * 0.99)]),
+        millis(latencies[total - 1]),
+        errors.get(),
+        logins.get(),
+        throttled.get());
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1e6;
+  }
+
+  private static int request(String method, String url, String body) {
+    try {
+      HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+      connection.setRequestMethod(method);
+      if (body != null) {
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        try (OutputStream out = connection.getOutputStream()) {
+          out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+      }
+      int status = connection.getResponseCode();
+      InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+      if (in != null) {
+        try (InputStream drained = in) {
+          byte[] buffer = new byte[8192];
+          while (drained.read(buffer) >= 0) {
+            // read the whole body so that the connection is reused
+          }
+        }
+      }
+      return status;
+    } catch (IOException ex) {
+      return -1;
+    }
+  }
+}
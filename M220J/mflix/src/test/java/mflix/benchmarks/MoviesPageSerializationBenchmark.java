@@ -0,0 +1,109 @@
+package mflix.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import mflix.api.models.IMDB;
+import mflix.api.models.Movie;
+import mflix.api.models.MoviesPage;
+import mflix.api.models.MoviesResult;
+import mflix.config.MoviesJsonModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization throughput of a 20 movies page, as a typed MoviesPage and as the HashMap envelope
+ * it replaced. Run {@link #main} with the test classpath once `mvn test-compile` has generated
+ * the benchmark classes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MoviesPageSerializationBenchmark {
+
+  private ObjectMapper mapper;
+
+  private MoviesPage page;
+
+  private Map<String, Object> envelope;
+
+  @Setup
+  public void setUp() {
+    mapper = Jackson2ObjectMapperBuilder.json().modules(new MoviesJsonModule()).build();
+
+    List<Movie> movies = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      movies.add(movie(i));
+    }
+    Map<String, Object> filters = new HashMap<>();
+    filters.put("genre", Collections.singletonList("Comedy"));
+
+    page = new MoviesPage("movies", new MoviesResult<>(movies, 6532L), 0, 20, filters, 0);
+
+    envelope = new HashMap<>();
+    envelope.put("movies", movies);
+    envelope.put("page", 0);
+    envelope.put("entries_per_page", 20);
+    envelope.put("total_results", 6532L);
+    envelope.put("filters", filters);
+  }
+
+  private static Movie movie(int i) {
+    Movie movie = new Movie();
+    movie.setId(String.format("573a1390f29313caabcd%04x", i));
+    movie.setTitle("The Movie Number " + i);
+    movie.setYear(1980 + i);
+    movie.setCast(Arrays.asList("Tom Hanks", "Meg Ryan", "Bill Pullman", "Rosie O'Donnell"));
+    movie.setGenres(Arrays.asList("Comedy", "Drama", "Romance"));
+    movie.setDirectors(Collections.singletonList("Nora Ephron"));
+    movie.setCountries(Collections.singletonList("USA"));
+    movie.setPlog(
+        "A recently widowed man's son calls a radio talk show to find his father a partner.");
+    movie.setLastUpdated(new Date(1440000000000L + i));
+    IMDB imdb = new IMDB();
+    imdb.setRating(6.8);
+    imdb.setVotes(147357);
+    movie.setImdb(imdb);
+    return movie;
+  }
+
+  @Benchmark
+  public byte[] typedPage() throws Exception {
+    return mapper.writeValueAsBytes(page);
+  }
+
+  @Benchmark
+  public byte[] mapEnvelope() throws Exception {
+    return mapper.writeValueAsBytes(envelope);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(
+            new OptionsBuilder()
+                .include(MoviesPageSerializationBenchmark.class.getSimpleName())
+                .build())
+        .run();
+  }
+}
@@ -0,0 +1,54 @@
+package mflix.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registrations per second on one core, counting the password hashing only, which dominates the
+ * cost of a registration: hashing the password and then verifying it again through the login, as
+ * before, against hashing it once. Run {@link #main} with the test classpath once `mvn
+ * test-compile` has generated the benchmark classes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+public class RegistrationBenchmark {
+
+  private static final String PASSWORD = "registration-password";
+
+  private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+
+  @Benchmark
+  public boolean hashThenVerify() {
+    return passwordEncoder.matches(PASSWORD, passwordEncoder.encode(PASSWORD));
+  }
+
+  @Benchmark
+  public String hashOnce() {
+    return passwordEncoder.encode(PASSWORD);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(
+            new OptionsBuilder().include(RegistrationBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
@@ -0,0 +1,69 @@
+package mflix.benchmarks;
+
+import mflix.api.cache.VerifiedTokenCache;
+import mflix.api.services.TokenAuthenticationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time spent building the authorization header returned by a write: minting a new token on every
+ * write, as before, against the refresh policy reusing a token far from its expiry. Run {@link
+ * #main} with the test classpath once `mvn test-compile` has generated the benchmark classes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenRefreshBenchmark {
+
+  private static final String EMAIL = "user@mflix.io";
+
+  private TokenAuthenticationService authService;
+
+  private String header;
+
+  @Setup
+  public void setUp() {
+    authService = new TokenAuthenticationService();
+    ReflectionTestUtils.setField(authService, "jwtSecret", "00102030405060708090");
+    ReflectionTestUtils.setField(authService, "jwtExpirationInMs", 604800000L);
+    ReflectionTestUtils.setField(authService, "jwtRefreshWindowInMs", 86400000L);
+    authService.setTokenCache(new VerifiedTokenCache(true, 10000));
+
+    header = authService.mintJWTHeader(EMAIL);
+    // the handler reads the email from the header before writing, which caches the token
+    authService.getAuthenticationUser(header);
+  }
+
+  @Benchmark
+  public String mint() {
+    return authService.mintJWTHeader(EMAIL);
+  }
+
+  @Benchmark
+  public String refresh() {
+    return authService.refreshJWTHeader(header, EMAIL);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(
+            new OptionsBuilder().include(TokenRefreshBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
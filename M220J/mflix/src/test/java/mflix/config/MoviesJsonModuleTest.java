@@ -0,0 +1,234 @@
+package mflix.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import mflix.api.cache.MovieJsonCache;
+import mflix.api.daos.MovieChangeWatcher;
+import mflix.api.models.FacetedMoviesPage;
+import mflix.api.models.FacetedMoviesResult;
+import mflix.api.models.Movie;
+import mflix.api.models.MovieTitle;
+import mflix.api.models.MoviesPage;
+import mflix.api.models.MoviesResult;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MoviesJsonModuleTest {
+
+  private ObjectMapper mapper;
+
+  private MongoClient mongoClient;
+
+  private MovieChangeWatcher watcher;
+
+  private long version;
+
+  @Before
+  public void setUp() {
+    mapper = Jackson2ObjectMapperBuilder.json().modules(new MoviesJsonModule()).build();
+    // the client is never used, the watcher stub only reports an open stream and its version
+    mongoClient = MongoClients.create();
+    version = 0;
+    watcher =
+        new MovieChangeWatcher(mongoClient, "mflix") {
+          @Override
+          public boolean isWatching() {
+            return true;
+          }
+
+          @Override
+          public long getVersion() {
+            return version;
+          }
+        };
+  }
+
+  /** Opens the stream the way the watcher does: bump, reset the listener, bump again. */
+  private void openStream(MovieJsonCache cache) {
+    version++;
+    cache.onReset();
+    version++;
+  }
+
+  @After
+  public void tearDown() {
+    mongoClient.close();
+  }
+
+  private List<Movie> movies() {
+    List<Movie> movies = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      Movie movie = new Movie();
+      movie.setId("573a1390f29313caabcd" + (4130 + i));
+      movie.setTitle("Movie " + i);
+      movie.setYear(1990 + i);
+      movie.setCast(Arrays.asList("Tom Hanks", "Meg Ryan"));
+      movie.setLastUpdated(new Date(1440000000000L));
+      movies.add(movie);
+    }
+    return movies;
+  }
+
+  private Map<String, Object> filters() {
+    Map<String, Object> filters = new HashMap<>();
+    filters.put("cast", Collections.singletonList("Tom Hanks"));
+    filters.put("sort", "viewer_rating");
+    return filters;
+  }
+
+  @Test
+  public void testMoviesPageMatchesMapEnvelope() throws Exception {
+    for (Long count : new Long[] {42L, null}) {
+      Map<String, Object> legacy = new HashMap<>();
+      legacy.put("movies", movies());
+      legacy.put("page", 1);
+      legacy.put("entries_per_page", 20);
+      if (count != null) {
+        legacy.put("total_results", count);
+      }
+      legacy.put("filters", filters());
+
+      MoviesPage page =
+          new MoviesPage("movies", new MoviesResult<>(movies(), count), 1, 20, filters(), 0);
+      Assert.assertEquals(
+          "MoviesPage JSON should match the map envelope",
+          mapper.writeValueAsString(legacy),
+          mapper.writeValueAsString(page));
+    }
+  }
+
+  @Test
+  public void testTitlesPageMatchesMapEnvelope() throws Exception {
+    MovieTitle title = new MovieTitle();
+    title.setId("573a1390f29313caabcd4135");
+    title.setTitle("Blacksmith Scene");
+    List<MovieTitle> titles = Collections.singletonList(title);
+
+    Map<String, Object> legacy = new HashMap<>();
+    legacy.put("titles", titles);
+    legacy.put("page", 0);
+    legacy.put("entries_per_page", 20);
+    legacy.put("filters", Collections.emptyMap());
+
+    MoviesPage page =
+        new MoviesPage(
+            "titles", new MoviesResult<>(titles, null), 0, 20, Collections.emptyMap(), 0);
+    Assert.assertEquals(
+        "Titles page JSON should match the map envelope",
+        mapper.writeValueAsString(legacy),
+        mapper.writeValueAsString(page));
+  }
+
+  @Test
+  public void testFacetedPageMatchesMapEnvelope() throws Exception {
+    List<Document> rating = Collections.singletonList(new Document("_id", 0).append("count", 3));
+    List<Document> runtime = Collections.singletonList(new Document("_id", 60).append("count", 2));
+
+    Map<String, Object> facets = new HashMap<>();
+    facets.put("runtime", runtime);
+    facets.put("rating", rating);
+    Map<String, Object> legacy = new HashMap<>();
+    legacy.put("movies", movies());
+    legacy.put("facets", facets);
+    legacy.put("total_results", 3L);
+    legacy.put("entries_per_page", 20);
+    legacy.put("filters", filters());
+    legacy.put("page", 0);
+
+    FacetedMoviesPage page =
+        new FacetedMoviesPage(
+            new FacetedMoviesResult(movies(), rating, runtime, 3L), 0, 20, filters(), 0);
+    Assert.assertEquals(
+        "Faceted page JSON should match the map envelope",
+        mapper.writeValueAsString(legacy),
+        mapper.writeValueAsString(page));
+  }
+
+  @Test
+  public void testCachedFragmentsMatchMapEnvelope() throws Exception {
+    MovieJsonCache cache = new MovieJsonCache(watcher, true, 1 << 20);
+    openStream(cache);
+    ObjectMapper cachingMapper =
+        Jackson2ObjectMapperBuilder.json().modules(new MoviesJsonModule(cache)).build();
+
+    Map<String, Object> legacy = new HashMap<>();
+    legacy.put("movies", movies());
+    legacy.put("page", 0);
+    legacy.put("entries_per_page", 20);
+    legacy.put("filters", filters());
+    String expected = mapper.writeValueAsString(legacy);
+
+    MoviesPage page =
+        new MoviesPage(
+            "movies", new MoviesResult<>(movies(), null), 0, 20, filters(), watcher.getVersion());
+    Assert.assertEquals(
+        "First write should fill the cache", expected, cachingMapper.writeValueAsString(page));
+    Assert.assertTrue("Movies should be cached", cache.getBytes() > 0);
+    Assert.assertNotNull("Movie fragment should be cached", cache.get(movies().get(0)));
+    Assert.assertEquals(
+        "Spliced fragments should match the map envelope",
+        expected,
+        cachingMapper.writeValueAsString(page));
+
+    Movie updated = movies().get(0);
+    updated.setLastUpdated(new Date(1450000000000L));
+    Assert.assertNull("A new lastupdated value should miss the cache", cache.get(updated));
+  }
+
+  @Test
+  public void testCacheRespectsVersionAndBudget() {
+    Movie movie = movies().get(0);
+    MovieJsonCache cache = new MovieJsonCache(watcher, true, 64);
+    long beforeReset = watcher.getVersion();
+    cache.put(movie, new byte[40], beforeReset);
+    Assert.assertNull("Nothing should be cached before the first reset", cache.get(movie));
+
+    openStream(cache);
+    cache.put(movie, new byte[40], beforeReset);
+    Assert.assertNull("Reads older than the reset should not be cached", cache.get(movie));
+    // no change is reported after the reset, reads of a quiet catalog must still be cached
+    long quiet = watcher.getVersion();
+    cache.put(movie, new byte[40], quiet);
+    Assert.assertNotNull("Reads newer than the reset should be cached", cache.get(movie));
+
+    // dispatched the way the watcher does: bump, apply the change, bump again
+    version++;
+    cache.onChange(
+        new ChangeStreamDocument<>(
+            null,
+            new MongoNamespace("mflix", "movies"),
+            null,
+            new BsonDocument("_id", new BsonObjectId(new ObjectId(movie.getId()))),
+            OperationType.UPDATE,
+            null));
+    version++;
+    cache.put(movie, new byte[40], quiet);
+    Assert.assertNull("Reads older than a change should not be cached", cache.get(movie));
+    cache.put(movie, new byte[40], watcher.getVersion());
+    Assert.assertNotNull("Reads newer than a change should be cached", cache.get(movie));
+
+    Movie other = movies().get(1);
+    cache.put(other, new byte[40], watcher.getVersion());
+    Assert.assertNull("Eldest entry should be evicted over budget", cache.get(movie));
+    Assert.assertEquals("Cache should keep within its budget", 40, cache.getBytes());
+  }
+}
@@ -0,0 +1,31 @@
+package mflix.config;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PrecompressedResourceResolverTest {
+
+  @Test
+  public void testListedCodingsAreAccepted() {
+    Assert.assertTrue(PrecompressedResourceResolver.accepts("gzip, deflate, br", "br"));
+    Assert.assertTrue(PrecompressedResourceResolver.accepts("gzip;q=0.5, br;q=1.0", "gzip"));
+    Assert.assertTrue(PrecompressedResourceResolver.accepts("GZIP", "gzip"));
+    Assert.assertFalse(PrecompressedResourceResolver.accepts("deflate", "gzip"));
+    Assert.assertFalse(PrecompressedResourceResolver.accepts(null, "gzip"));
+  }
+
+  @Test
+  public void testZeroWeightRefusesCoding() {
+    Assert.assertFalse(PrecompressedResourceResolver.accepts("gzip, br;q=0", "br"));
+    Assert.assertFalse(PrecompressedResourceResolver.accepts("gzip ; q=0.000, br", "gzip"));
+    Assert.assertTrue(PrecompressedResourceResolver.accepts("gzip ; q=0.000, br", "br"));
+  }
+
+  @Test
+  public void testWildcardAppliesToUnlistedCodings() {
+    Assert.assertTrue(PrecompressedResourceResolver.accepts("*", "br"));
+    Assert.assertFalse(PrecompressedResourceResolver.accepts("*;q=0, gzip", "br"));
+    Assert.assertTrue(PrecompressedResourceResolver.accepts("*;q=0, gzip", "gzip"));
+    Assert.assertFalse(PrecompressedResourceResolver.accepts("br;q=0, *", "br"));
+  }
+}
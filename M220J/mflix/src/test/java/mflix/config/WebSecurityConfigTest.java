@@ -0,0 +1,73 @@
+package mflix.config;
+
+import mflix.api.security.JWTAuthenticationFilter;
+import mflix.api.services.TokenAuthenticationService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Collections;
+
+public class WebSecurityConfigTest {
+
+  private int verifications;
+
+  private JWTAuthenticationFilter filter;
+
+  @Before
+  public void setUp() {
+    filter = new JWTAuthenticationFilter();
+    filter.setPublicRoutes(WebSecurityConfig.PUBLIC_ROUTES);
+    filter.setAuthService(
+        new TokenAuthenticationService() {
+          @Override
+          public Authentication getAuthentication(HttpServletRequest request) {
+            verifications++;
+            return new UsernamePasswordAuthenticationToken(
+                "user@mflix.io", null, Collections.emptyList());
+          }
+        });
+  }
+
+  @After
+  public void tearDown() {
+    SecurityContextHolder.clearContext();
+  }
+
+  private void filter(String method, String uri) throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+    // the dispatcher servlet is mapped on `/`, so the servlet path is the whole path
+    request.setServletPath(uri);
+    request.addHeader("Authorization", "Bearer token");
+    filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+  }
+
+  @Test
+  public void testPublicRoutesSkipTokenVerification() throws Exception {
+    filter("GET", "/api/v1/movies/");
+    filter("GET", "/api/v1/movies/id/573a1390f29313caabcd4135");
+    filter("GET", "/static/js/main.js");
+    filter("OPTIONS", "/api/v1/user/preferences");
+    filter("POST", "/api/v1/user/login");
+
+    Assert.assertEquals(0, verifications);
+    Assert.assertNull(SecurityContextHolder.getContext().getAuthentication());
+  }
+
+  @Test
+  public void testProtectedRoutesVerifyToken() throws Exception {
+    filter("PUT", "/api/v1/user/update-preferences");
+
+    Assert.assertEquals(1, verifications);
+    Assert.assertEquals(
+        "user@mflix.io", SecurityContextHolder.getContext().getAuthentication().getPrincipal());
+  }
+}